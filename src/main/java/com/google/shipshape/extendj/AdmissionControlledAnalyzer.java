@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.common.collect.ImmutableList;
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.shipshape.service.AnalyzerException;
+import com.google.shipshape.service.ShipshapeLogger;
+import com.google.shipshape.service.StatelessAnalyzer;
+
+import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the ExtendJ analyzer under the admission control of an {@link AnalysisScheduler}.
+ *
+ * <p>The heap usage of a request is estimated from the byte size of the source files in the
+ * request. Requests that are rejected by the scheduler fail fast with an AnalyzerException.
+ */
+public class AdmissionControlledAnalyzer extends StatelessAnalyzer {
+
+  private static final ShipshapeLogger logger =
+      ShipshapeLogger.getLogger(AdmissionControlledAnalyzer.class);
+
+  /**
+   * Estimated number of heap bytes used per byte of source code, for the AST and the attributes
+   * and CFGs computed on it.
+   */
+  public static final long HEAP_BYTES_PER_SOURCE_BYTE = 200;
+
+  private final ExtendJAnalyzer analyzer;
+  private final AnalysisScheduler scheduler;
+
+  public AdmissionControlledAnalyzer(ExtendJAnalyzer analyzer, AnalysisScheduler scheduler) {
+    this.analyzer = analyzer;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public String getCategory() {
+    return analyzer.getCategory();
+  }
+
+  @Override
+  public ImmutableList<Note> analyze(ShipshapeContext context) throws AnalyzerException {
+    long estimatedBytes = estimateHeapBytes(context);
+    AnalysisScheduler.Lease lease;
+    try {
+      lease = scheduler.admit(estimatedBytes);
+    } catch (RejectedExecutionException e) {
+      logger.warning("Rejected analysis request: " + e.getMessage(), context, getCategory());
+      throw new AnalyzerException(getCategory(), context,
+          "Analyzer overloaded: " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalyzerException(getCategory(), context,
+          "Interrupted while waiting for admission", e);
+    }
+    try {
+      return analyzer.analyze(context);
+    } finally {
+      lease.close();
+    }
+  }
+
+  /** Estimates the heap usage for analyzing the files in the context. */
+  static long estimateHeapBytes(ShipshapeContext context) {
+    String root = ExtendJAnalyzer.repoRoot(context);
+    long sourceBytes = 0;
+    for (String path : context.getFilePathList()) {
+      File file = new File(root + path);
+      if (file.isFile()) {
+        sourceBytes += file.length();
+      }
+    }
+    return sourceBytes * HEAP_BYTES_PER_SOURCE_BYTE;
+  }
+}
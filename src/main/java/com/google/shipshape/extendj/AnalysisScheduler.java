@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for analysis requests.
+ *
+ * <p>A request is admitted when fewer than the maximum number of requests are running, and the
+ * estimated heap usage of the request fits in the heap budget together with the running requests.
+ * A request that does not fit, or that arrives while other requests are waiting, waits in a queue.
+ * Waiting requests are admitted in arrival order, so a large request is not starved by a stream
+ * of small requests that fit around it. A request is rejected immediately when the queue is full,
+ * and rejected after waiting too long in the queue.
+ *
+ * <p>A request is always admitted when no other request is running, even if its estimated heap
+ * usage is larger than the heap budget. Otherwise, very large requests would never run.
+ */
+public class AnalysisScheduler implements AnalysisSchedulerMXBean {
+
+  /** A running request. Must be closed when the request is done. */
+  public class Lease implements AutoCloseable {
+    private final long bytes;
+    private boolean closed = false;
+
+    private Lease(long bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public void close() {
+      synchronized (AnalysisScheduler.this) {
+        if (!closed) {
+          closed = true;
+          running -= 1;
+          reservedBytes -= bytes;
+          AnalysisScheduler.this.notifyAll();
+        }
+      }
+    }
+  }
+
+  private final int maxConcurrent;
+  private final int maxQueueDepth;
+  private final long heapBudget;
+  private final long maxWaitMillis;
+
+  /** The waiting requests in arrival order. Only the first waiter may be admitted. */
+  private final Deque<Object> waiters = new ArrayDeque<Object>();
+  private int running = 0;
+  private long reservedBytes = 0;
+  private long admittedRequests = 0;
+  private long rejectedQueueFull = 0;
+  private long rejectedTimeout = 0;
+
+  /**
+   * @param maxConcurrent maximum number of concurrently running requests
+   * @param maxQueueDepth maximum number of requests waiting for admission
+   * @param heapBudget the estimated heap bytes the running requests may use together
+   * @param maxWaitMillis maximum time a request waits for admission
+   */
+  public AnalysisScheduler(int maxConcurrent, int maxQueueDepth, long heapBudget,
+      long maxWaitMillis) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("maxConcurrent must be at least 1");
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueueDepth = maxQueueDepth;
+    this.heapBudget = heapBudget;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Waits until a request with the given estimated heap usage can be admitted.
+   *
+   * @return a lease that must be closed when the request is done
+   * @throws RejectedExecutionException if the queue is full or the request waited too long
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public synchronized Lease admit(long estimatedBytes) throws InterruptedException {
+    if (!waiters.isEmpty() || !canRun(estimatedBytes)) {
+      if (waiters.size() >= maxQueueDepth) {
+        rejectedQueueFull += 1;
+        throw new RejectedExecutionException(String.format(
+            "analysis queue is full (%d running, %d queued)", running, waiters.size()));
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+      Object ticket = new Object();
+      waiters.addLast(ticket);
+      try {
+        while (waiters.peekFirst() != ticket || !canRun(estimatedBytes)) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            rejectedTimeout += 1;
+            throw new RejectedExecutionException(String.format(
+                "timed out waiting for admission after %d ms", maxWaitMillis));
+          }
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+      } finally {
+        waiters.remove(ticket);
+        // The next waiter may now be first in the queue.
+        notifyAll();
+      }
+    }
+    running += 1;
+    reservedBytes += estimatedBytes;
+    admittedRequests += 1;
+    return new Lease(estimatedBytes);
+  }
+
+  private boolean canRun(long estimatedBytes) {
+    return running == 0
+        || (running < maxConcurrent && reservedBytes + estimatedBytes <= heapBudget);
+  }
+
+  @Override
+  public synchronized int getQueueDepth() {
+    return waiters.size();
+  }
+
+  @Override
+  public synchronized int getRunning() {
+    return running;
+  }
+
+  @Override
+  public synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  @Override
+  public synchronized long getAdmittedRequests() {
+    return admittedRequests;
+  }
+
+  @Override
+  public synchronized long getRejectedQueueFull() {
+    return rejectedQueueFull;
+  }
+
+  @Override
+  public synchronized long getRejectedTimeout() {
+    return rejectedTimeout;
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+/** Metrics exported over JMX by the analysis request scheduler. */
+public interface AnalysisSchedulerMXBean {
+  /** Number of requests waiting for admission. */
+  int getQueueDepth();
+
+  /** Number of requests currently being analyzed. */
+  int getRunning();
+
+  /** Estimated heap bytes reserved by the running requests. */
+  long getReservedBytes();
+
+  /** Total number of admitted requests. */
+  long getAdmittedRequests();
+
+  /** Total number of requests rejected because the queue was full. */
+  long getRejectedQueueFull();
+
+  /** Total number of requests rejected because they waited too long for admission. */
+  long getRejectedTimeout();
+}
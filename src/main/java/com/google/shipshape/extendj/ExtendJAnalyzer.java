@@ -24,55 +24,407 @@ import com.google.shipshape.service.ShipshapeLogger;
 import com.google.shipshape.service.AnalyzerException;
 import com.google.shipshape.service.StatelessAnalyzer;
 import com.google.simplecfg.ExtendJAnalyzerFrontend;
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.AnalysisCancelled;
+import com.google.simplecfg.ast.CancellationToken;
 import com.google.simplecfg.ast.ExtendJFinding;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Uses the ExtendJ analyzer to find issues in Java code.  */
-public class ExtendJAnalyzer extends StatelessAnalyzer {
+public class ExtendJAnalyzer extends StatelessAnalyzer implements ExtendJAnalyzerMXBean {
 
   private static final ShipshapeLogger logger = ShipshapeLogger.getLogger(ExtendJAnalyzer.class);
 
   public static final String CATEGORY = "ExtendJ";
 
+  private final AnalysisBudget budget;
+
+  /** The deadline for each request, in milliseconds. Zero means no deadline. */
+  private final long requestTimeoutMillis;
+
+  /** Number of files analyzed in parallel for a single request. */
+  private final int fileWorkers;
+
+  /** Executor for parallel file analysis, or {@code null} if files are analyzed sequentially. */
+  private final ExecutorService executor;
+
+  private final FileCostModel costModel = new FileCostModel();
+
+  /** Cache of the findings of analyzed files, or {@code null} if findings are not cached. */
+  private final FindingsCache findingsCache;
+
+  private volatile long lastRealizedMakespanMillis = 0;
+  private volatile long lastIdealMakespanMillis = 0;
+  private final AtomicLong totalRealizedMakespanMillis = new AtomicLong();
+  private final AtomicLong totalIdealMakespanMillis = new AtomicLong();
+
+  public ExtendJAnalyzer() {
+    this(AnalysisBudget.unlimited(), 0);
+  }
+
+  /**
+   * Create an analyzer that uses the given analysis budget for all requests. The budget metrics
+   * are accumulated over all requests.
+   *
+   * @param requestTimeoutMillis the deadline for each request, or 0 for no deadline
+   */
+  public ExtendJAnalyzer(AnalysisBudget budget, long requestTimeoutMillis) {
+    this(budget, requestTimeoutMillis, 1);
+  }
+
+  /**
+   * Create an analyzer that analyzes up to fileWorkers files in parallel for each request. Files
+   * are started in order of decreasing estimated cost, so that large files do not end up last.
+   */
+  public ExtendJAnalyzer(AnalysisBudget budget, long requestTimeoutMillis, int fileWorkers) {
+    this(budget, requestTimeoutMillis, fileWorkers, 0);
+  }
+
+  /**
+   * Create an analyzer that caches the findings of analyzed files, with a total estimated size of
+   * up to findingsCacheBytes, so that files sent again with the same contents are not analyzed
+   * again. No findings are cached if findingsCacheBytes is zero.
+   */
+  public ExtendJAnalyzer(AnalysisBudget budget, long requestTimeoutMillis, int fileWorkers,
+      long findingsCacheBytes) {
+    this.budget = budget;
+    this.requestTimeoutMillis = requestTimeoutMillis;
+    this.fileWorkers = Math.max(1, fileWorkers);
+    if (this.fileWorkers > 1) {
+      executor = Executors.newFixedThreadPool(this.fileWorkers,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("extendj-file-%d").build());
+    } else {
+      executor = null;
+    }
+    findingsCache = findingsCacheBytes > 0 ? new FindingsCache(findingsCacheBytes) : null;
+  }
+
+  /** Returns the analysis budget, including the metrics for skipped work. */
+  public AnalysisBudget getAnalysisBudget() {
+    return budget;
+  }
+
   @Override
   public String getCategory() {
     return CATEGORY;
   }
 
+  /**
+   * Analyze the files in the context within the request deadline. Each file that timed out or
+   * failed is reported to the client by a note with the subcategory
+   * {@link ShipshapeFindingAdapter#INCOMPLETE_ANALYSIS}, after the findings of the other files.
+   */
   @Override
   public ImmutableList<Note> analyze(ShipshapeContext context) throws AnalyzerException {
-    String root = "";
-    if (context.hasRepoRoot()) {
-      root = context.getRepoRoot();
-      if (!root.endsWith("/")) {
-        root = root + "/";
+    List<FileStatus> statuses = new ArrayList<>();
+    ImmutableList<Note> findings = analyze(context,
+        CancellationToken.withTimeout(requestTimeoutMillis), statuses);
+    ImmutableList.Builder<Note> notes = ImmutableList.builder();
+    notes.addAll(findings);
+    for (FileStatus status : statuses) {
+      if (status.status != FileStatus.Status.OK) {
+        logger.warning("Incomplete analysis: " + status, context, CATEGORY);
+        notes.add(ShipshapeFindingAdapter.adapt(status));
       }
     }
-    Collection<Note> findings = new LinkedList<>();
+    return notes.build();
+  }
+
+  /**
+   * A single file to analyze in a request, and the result of analyzing it. The results are
+   * written by a file worker and read by the request thread, so they are volatile.
+   */
+  private static class FileJob {
+    final String path;
+    final String sourcePath;
+    final long bytes;
+    final double estimatedMillis;
+    volatile Collection<Note> findings = Collections.emptyList();
+    volatile FileStatus status = null;
+    volatile Throwable failure = null;
+    volatile long millis = 0;
+
+    FileJob(String path, String sourcePath, long bytes, double estimatedMillis) {
+      this.path = path;
+      this.sourcePath = sourcePath;
+      this.bytes = bytes;
+      this.estimatedMillis = estimatedMillis;
+    }
+  }
+
+  /** Orders jobs by decreasing estimated cost. */
+  private static final Comparator<FileJob> LONGEST_FIRST = new Comparator<FileJob>() {
+    @Override
+    public int compare(FileJob a, FileJob b) {
+      return Double.compare(b.estimatedMillis, a.estimatedMillis);
+    }
+  };
+
+  /**
+   * Analyze the files in the context until the token is cancelled. Returns the findings for the
+   * files that were completely analyzed, and adds a status record for each analyzed file to the
+   * statuses collection.
+   *
+   * @throws AnalyzerException if no file could be analyzed because of errors
+   */
+  public ImmutableList<Note> analyze(final ShipshapeContext context, final CancellationToken token,
+      Collection<FileStatus> statuses) throws AnalyzerException {
+    final String root = repoRoot(context);
+    List<FileJob> jobs = new ArrayList<>();
     for (String path : context.getFilePathList()) {
       String sourcePath = root + path;
-      try {
-        File file = new File(sourcePath);
-        if (file.isFile()) {
-          findings.addAll(analyzeFile(context, sourcePath, root));
-        } else if (file.isDirectory()) {
-          logger.warning("Warning: skipping directory " + path, context, CATEGORY);
+      File file = new File(sourcePath);
+      if (file.isFile()) {
+        long bytes = file.length();
+        // The cost model is keyed by the repository-relative path, so that the estimates carry
+        // over between checkouts of the same repository.
+        jobs.add(new FileJob(path, sourcePath, bytes, costModel.estimate(path, bytes)));
+      } else if (file.isDirectory()) {
+        logger.warning("Warning: skipping directory " + path, context, CATEGORY);
+      }
+    }
+
+    // Start the most expensive files first.
+    List<FileJob> schedule = new ArrayList<>(jobs);
+    Collections.sort(schedule, LONGEST_FIRST);
+    long start = System.nanoTime();
+    if (executor == null || schedule.size() < 2) {
+      for (FileJob job : schedule) {
+        runJob(context, root, job, token);
+      }
+    } else {
+      List<Future<?>> futures = new ArrayList<>();
+      for (final FileJob job : schedule) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            runJob(context, root, job, token);
+          }
+        }));
+      }
+      boolean interrupted = false;
+      for (Future<?> future : futures) {
+        // Wait for every job to finish or be cancelled before reading the results, also when
+        // interrupted: the running jobs stop at the next cancellation check.
+        while (true) {
+          try {
+            future.get();
+            break;
+          } catch (InterruptedException e) {
+            if (!interrupted) {
+              interrupted = true;
+              token.cancel();
+              for (Future<?> pending : futures) {
+                pending.cancel(false);
+              }
+            }
+          } catch (CancellationException | ExecutionException e) {
+            // Not started before the request was interrupted. runJob catches all exceptions.
+            break;
+          }
         }
-      } catch (Throwable e) {
-        throw new AnalyzerException(CATEGORY, context,
-            String.format("Failed to analyze file %s: %s",
-                path, e.getMessage()), e);
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
       }
     }
+    recordMakespan(context, jobs, (System.nanoTime() - start) / 1000000L);
+
+    // Collect the results in the request order.
+    Collection<Note> findings = new LinkedList<>();
+    int completed = 0;
+    FileJob firstFailure = null;
+    for (FileJob job : jobs) {
+      if (job.status == null) {
+        // Interrupted before the job was started.
+        job.status = FileStatus.timedOut(job.path);
+      }
+      statuses.add(job.status);
+      findings.addAll(job.findings);
+      if (job.status.status == FileStatus.Status.OK) {
+        completed += 1;
+      } else if (job.failure != null && firstFailure == null) {
+        firstFailure = job;
+      }
+    }
+    if (completed == 0 && firstFailure != null) {
+      // Nothing was analyzed, report the failure for the whole request.
+      throw new AnalyzerException(CATEGORY, context,
+          String.format("Failed to analyze file %s: %s",
+              firstFailure.path, firstFailure.failure.getMessage()), firstFailure.failure);
+    }
+    if (budget.hasSkippedWork()) {
+      logger.info("Analysis budget: " + budget, context, CATEGORY);
+    }
     return ImmutableList.copyOf(findings);
   }
 
+  /** Analyze the file for a single job, and store the result in the job. */
+  private void runJob(ShipshapeContext context, String root, FileJob job,
+      CancellationToken token) {
+    if (token.isCancelled()) {
+      job.status = FileStatus.timedOut(job.path);
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      try {
+        job.findings = analyzeCached(context, job.sourcePath, root, token);
+      } catch (OutOfMemoryError e) {
+        // The analyzer retries files that fail during analysis, but not files that run out of
+        // memory while reading or parsing. Release the cached findings and retry the file once.
+        if (findingsCache != null) {
+          findingsCache.clear();
+        }
+        logger.warning("Out of memory analyzing " + job.path + ", retrying", context, CATEGORY);
+        job.findings = analyzeCached(context, job.sourcePath, root, token);
+      }
+      job.status = FileStatus.ok(job.path);
+    } catch (AnalysisCancelled e) {
+      job.status = FileStatus.timedOut(job.path);
+    } catch (Throwable e) {
+      job.status = FileStatus.failed(job.path, e.getMessage());
+      job.failure = e;
+    }
+    job.millis = (System.nanoTime() - start) / 1000000L;
+    if (job.status.status == FileStatus.Status.OK) {
+      costModel.record(job.path, job.bytes, job.millis);
+    }
+  }
+
+  /** Analyze a single file for findings, using the findings cache if it is enabled. */
+  private Collection<Note> analyzeCached(ShipshapeContext context, String sourcePath,
+      String pathPrefix, CancellationToken token) throws AnalyzerException, IOException {
+    if (findingsCache == null) {
+      return analyzeFile(context, sourcePath, pathPrefix, budget, token);
+    }
+    logger.info("Checking file " + sourcePath, context, CATEGORY);
+    Collection<Note> findings = Lists.newArrayList();
+    for (ExtendJFinding finding : findingsCache.analyzeFile(sourcePath, budget, token)) {
+      findings.add(ShipshapeFindingAdapter.adapt(finding, context, pathPrefix));
+    }
+    return findings;
+  }
+
+  /**
+   * Record the realized makespan of a request, and the ideal makespan: the larger of the
+   * longest single file and the total work divided evenly over the workers.
+   */
+  private void recordMakespan(ShipshapeContext context, List<FileJob> jobs, long realized) {
+    long[] millis = new long[jobs.size()];
+    for (int i = 0; i < millis.length; ++i) {
+      millis[i] = jobs.get(i).millis;
+    }
+    long ideal = idealMakespan(millis, executor == null ? 1 : fileWorkers);
+    lastRealizedMakespanMillis = realized;
+    lastIdealMakespanMillis = ideal;
+    totalRealizedMakespanMillis.addAndGet(realized);
+    totalIdealMakespanMillis.addAndGet(ideal);
+    if (jobs.size() > 1) {
+      logger.info(String.format("Analyzed %d files in %d ms (ideal makespan %d ms)",
+          jobs.size(), realized, ideal), context, CATEGORY);
+    }
+  }
+
+  /**
+   * The ideal makespan of jobs with the given times on the given number of workers: the larger
+   * of the longest job and the total time divided evenly over the workers that have a job.
+   */
+  static long idealMakespan(long[] millis, int workers) {
+    long total = 0;
+    long longest = 0;
+    for (long job : millis) {
+      total += job;
+      longest = Math.max(longest, job);
+    }
+    int busy = Math.min(Math.max(1, workers), Math.max(1, millis.length));
+    return Math.max(longest, (total + busy - 1) / busy);
+  }
+
+  @Override
+  public long getLastRealizedMakespanMillis() {
+    return lastRealizedMakespanMillis;
+  }
+
+  @Override
+  public long getLastIdealMakespanMillis() {
+    return lastIdealMakespanMillis;
+  }
+
+  @Override
+  public long getTotalRealizedMakespanMillis() {
+    return totalRealizedMakespanMillis.get();
+  }
+
+  @Override
+  public long getTotalIdealMakespanMillis() {
+    return totalIdealMakespanMillis.get();
+  }
+
+  @Override
+  public long getSkippedMethods() {
+    return budget.skippedMethods.get();
+  }
+
+  @Override
+  public long getAbortedSearches() {
+    return budget.abortedSearches.get() + budget.timedOutSearches.get();
+  }
+
+  @Override
+  public long getPrefilteredMethods() {
+    return budget.prefilteredMethods.get();
+  }
+
+  @Override
+  public long getFindingsCacheHits() {
+    return findingsCache == null ? 0 : findingsCache.stats().hitCount();
+  }
+
+  @Override
+  public long getFindingsCacheMisses() {
+    return findingsCache == null ? 0 : findingsCache.stats().missCount();
+  }
+
+  @Override
+  public long getFindingsCacheEvictions() {
+    return findingsCache == null ? 0 : findingsCache.stats().evictionCount();
+  }
+
+  @Override
+  public long getFindingsCacheSize() {
+    return findingsCache == null ? 0 : findingsCache.size();
+  }
+
+  /** The repository root directory for the context, with a trailing slash if not empty. */
+  static String repoRoot(ShipshapeContext context) {
+    String root = "";
+    if (context.hasRepoRoot()) {
+      root = context.getRepoRoot();
+      if (!root.endsWith("/")) {
+        root = root + "/";
+      }
+    }
+    return root;
+  }
+
   /**
    * Analyze a single file for findings. Returns the findings in a collection.
    *
@@ -82,10 +434,31 @@ public class ExtendJAnalyzer extends StatelessAnalyzer {
    */
   public static Collection<Note> analyzeFile(ShipshapeContext context,
       String sourcePath, String pathPrefix) throws AnalyzerException {
+    return analyzeFile(context, sourcePath, pathPrefix, AnalysisBudget.unlimited());
+  }
+
+  /**
+   * Analyze a single file for findings within the given analysis budget. Returns the findings in
+   * a collection.
+   */
+  public static Collection<Note> analyzeFile(ShipshapeContext context,
+      String sourcePath, String pathPrefix, AnalysisBudget budget) throws AnalyzerException {
+    return analyzeFile(context, sourcePath, pathPrefix, budget, CancellationToken.NONE);
+  }
+
+  /**
+   * Analyze a single file for findings within the given analysis budget. Returns the findings in
+   * a collection. Throws {@code AnalysisCancelled} if the token is cancelled before the analysis
+   * of the file completes.
+   */
+  public static Collection<Note> analyzeFile(ShipshapeContext context,
+      String sourcePath, String pathPrefix, AnalysisBudget budget, CancellationToken token)
+      throws AnalyzerException {
 
     logger.info("Checking file " + sourcePath, context, CATEGORY);
     Collection<Note> findings = Lists.newArrayList();
-    for (ExtendJFinding finding : ExtendJAnalyzerFrontend.analyzeFile(sourcePath)) {
+    for (ExtendJFinding finding
+        : ExtendJAnalyzerFrontend.analyzeFile(sourcePath, budget, token)) {
       findings.add(ShipshapeFindingAdapter.adapt(finding, context, pathPrefix));
     }
     return findings;
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+/** Metrics exported over JMX by the ExtendJ analyzer. */
+public interface ExtendJAnalyzerMXBean {
+  /** Wall time of the file analysis phase of the last request, in milliseconds. */
+  long getLastRealizedMakespanMillis();
+
+  /**
+   * Lower bound for the wall time of the file analysis phase of the last request, given the
+   * measured time for each file and the number of workers, in milliseconds.
+   */
+  long getLastIdealMakespanMillis();
+
+  /** Sum of the realized makespans of all requests, in milliseconds. */
+  long getTotalRealizedMakespanMillis();
+
+  /** Sum of the ideal makespans of all requests, in milliseconds. */
+  long getTotalIdealMakespanMillis();
+
+  /** Number of methods skipped due to the analysis budget. */
+  long getSkippedMethods();
+
+  /** Number of CFG searches aborted due to the analysis budget. */
+  long getAbortedSearches();
+
+  /** Number of methods and lambdas not analyzed because they have no analysis candidates. */
+  long getPrefilteredMethods();
+
+  /** Number of files whose findings were found in the findings cache. */
+  long getFindingsCacheHits();
+
+  /** Number of files that were not in the findings cache. */
+  long getFindingsCacheMisses();
+
+  /** Number of files whose findings were evicted from the findings cache. */
+  long getFindingsCacheEvictions();
+
+  /** Number of files whose findings are in the findings cache. */
+  long getFindingsCacheSize();
+}
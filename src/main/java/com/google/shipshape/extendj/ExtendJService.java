@@ -22,11 +22,16 @@ import com.google.shipshape.util.rpc.Server;
 import com.google.shipshape.proto.ShipshapeContextProto.Stage;
 import com.google.shipshape.service.Analyzer;
 import com.google.shipshape.service.JavaDispatcher;
+import com.google.simplecfg.ast.AnalysisBudget;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import javax.management.ObjectName;
 
 /** Run ExtendJ based analyzers. */
 class ExtendJService {
@@ -34,13 +39,93 @@ class ExtendJService {
   @Parameter(names = "--port", description = "port for the analyzer RPC server")
   private int port = 10008;
 
+  @Parameter(names = "--max_cfg_nodes",
+      description = "skip methods with more CFG nodes than this (0 = no limit)")
+  private int maxCfgNodes = 0;
+
+  @Parameter(names = "--max_search_edges",
+      description = "abort CFG searches that process more edges than this (0 = no limit)")
+  private int maxSearchEdges = 0;
+
+  @Parameter(names = "--max_file_millis",
+      description = "time budget in milliseconds for analyzing a single file (0 = no limit)")
+  private long maxFileMillis = 0;
+
+  @Parameter(names = "--request_timeout_millis",
+      description = "deadline in milliseconds for each analysis request (0 = no deadline)")
+  private long requestTimeoutMillis = 0;
+
+  @Parameter(names = "--file_workers",
+      description = "number of files analyzed in parallel for each request")
+  private int fileWorkers = 1;
+
+  @Parameter(names = "--max_concurrent_requests",
+      description = "maximum number of analysis requests running at the same time")
+  private int maxConcurrentRequests = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(names = "--max_queue_depth",
+      description = "maximum number of analysis requests waiting to run")
+  private int maxQueueDepth = 16;
+
+  @Parameter(names = "--heap_fraction",
+      description = "fraction of the maximum heap size that running analyses may use")
+  private double heapFraction = 0.6;
+
+  @Parameter(names = "--admission_timeout_millis",
+      description = "maximum time in milliseconds an analysis request waits to run")
+  private long admissionTimeoutMillis = 30000;
+
+  @Parameter(names = "--findings_cache_fraction",
+      description = "fraction of the maximum heap size used to cache findings (0 = disabled)")
+  private double findingsCacheFraction = 0.1;
+
+  @Parameter(names = "--shard_port",
+      description = "port for shard requests from a ShardCoordinator (0 = disabled)")
+  private int shardPort = 0;
+
+  @Parameter(names = "--shard_address",
+      description = "address to accept shard requests on (default: the loopback interface)")
+  private String shardAddress = null;
+
+  @Parameter(names = "--shard_token_file",
+      description = "file containing the token that shard requests must include")
+  private String shardTokenFile = null;
+
   public static void main(String[] args) throws Throwable {
     try {
       ExtendJService service = new ExtendJService();
       new JCommander(service, args);
 
       ArrayList<Analyzer> analyzers = new ArrayList<>();
-      analyzers.add(new ExtendJAnalyzer());
+      ExtendJAnalyzer analyzer = new ExtendJAnalyzer(new AnalysisBudget(
+          service.maxCfgNodes, service.maxSearchEdges, service.maxFileMillis),
+          service.requestTimeoutMillis, service.fileWorkers,
+          (long) (Runtime.getRuntime().maxMemory() * service.findingsCacheFraction));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(analyzer,
+          new ObjectName("com.google.shipshape.extendj:type=ExtendJAnalyzer"));
+      AnalysisScheduler scheduler = new AnalysisScheduler(service.maxConcurrentRequests,
+          service.maxQueueDepth,
+          (long) (Runtime.getRuntime().maxMemory() * service.heapFraction),
+          service.admissionTimeoutMillis);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(scheduler,
+          new ObjectName("com.google.shipshape.extendj:type=AnalysisScheduler"));
+      AdmissionControlledAnalyzer admissionControlled =
+          new AdmissionControlledAnalyzer(analyzer, scheduler);
+      analyzers.add(admissionControlled);
+
+      if (service.shardPort > 0) {
+        if (service.shardTokenFile == null) {
+          throw new IllegalArgumentException("--shard_port requires --shard_token_file");
+        }
+        InetAddress shardAddress = service.shardAddress == null
+            ? InetAddress.getLoopbackAddress()
+            : InetAddress.getByName(service.shardAddress);
+        ShardServer shardServer = new ShardServer(shardAddress, service.shardPort,
+            ShardServer.readToken(Paths.get(service.shardTokenFile)), admissionControlled,
+            service.maxConcurrentRequests);
+        shardServer.start();
+        System.out.format("Accepting shard requests at %s\n", shardServer.getAddress());
+      }
 
       Server server = new Server();
       JavaDispatcher<Object> dispatcher = new JavaDispatcher<>(analyzers, Stage.PRE_BUILD, null);
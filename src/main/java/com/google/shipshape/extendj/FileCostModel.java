@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the time needed to analyze a file.
+ *
+ * <p>Files that were analyzed before are estimated by an exponentially weighted moving average of
+ * their previous analysis times. Other files are estimated from their byte size, using the
+ * average analysis time per byte over all files analyzed so far. Safe to use from multiple
+ * threads.
+ *
+ * <p>Files are identified by their path relative to the repository root, so that the history of
+ * a file applies to every checkout of the repository.
+ */
+public class FileCostModel {
+
+  /** Weight of the latest measurement in the moving averages. */
+  private static final double ALPHA = 0.3;
+
+  /** Initial estimate of the analysis time per source byte, in milliseconds. */
+  private static final double INITIAL_MILLIS_PER_BYTE = 0.01;
+
+  /** Maximum number of paths to keep timing history for. */
+  private static final int MAX_HISTORY = 100000;
+
+  private final ConcurrentMap<String, Double> history = new ConcurrentHashMap<>();
+  private volatile double millisPerByte = INITIAL_MILLIS_PER_BYTE;
+
+  /** Returns the estimated analysis time in milliseconds for the file at the relative path. */
+  public double estimate(String path, long bytes) {
+    Double millis = history.get(path);
+    if (millis != null) {
+      return millis;
+    }
+    return bytes * millisPerByte;
+  }
+
+  /** Records the measured analysis time for the file at the relative path. */
+  public void record(String path, long bytes, double millis) {
+    Double previous = history.get(path);
+    if (previous != null) {
+      history.put(path, ALPHA * millis + (1 - ALPHA) * previous);
+    } else if (history.size() < MAX_HISTORY) {
+      history.put(path, millis);
+    }
+    if (bytes > 0) {
+      synchronized (this) {
+        millisPerByte = ALPHA * (millis / bytes) + (1 - ALPHA) * millisPerByte;
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+/** The result of analyzing a single file in an analysis request. */
+public class FileStatus {
+
+  /** The outcome of analyzing a file. */
+  public enum Status {
+    /** The file was analyzed and all findings were reported. */
+    OK,
+    /** The request deadline passed before the analysis of the file completed. */
+    TIMED_OUT,
+    /** The analysis failed with an error. */
+    FAILED
+  }
+
+  public final String path;
+  public final Status status;
+  /** Describes the failure, or {@code null} if the file was analyzed successfully. */
+  public final String message;
+
+  public FileStatus(String path, Status status, String message) {
+    this.path = path;
+    this.status = status;
+    this.message = message;
+  }
+
+  public static FileStatus ok(String path) {
+    return new FileStatus(path, Status.OK, null);
+  }
+
+  public static FileStatus timedOut(String path) {
+    return new FileStatus(path, Status.TIMED_OUT, "analysis deadline exceeded");
+  }
+
+  public static FileStatus failed(String path, String message) {
+    return new FileStatus(path, Status.FAILED, message);
+  }
+
+  @Override
+  public String toString() {
+    return message == null
+        ? String.format("%s: %s", path, status)
+        : String.format("%s: %s (%s)", path, status, message);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.simplecfg.ExtendJAnalyzerFrontend;
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.CancellationToken;
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.ExtendJFinding.ExtendJFix;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A least-recently-used cache of the findings of analyzed files, keyed by the hash of the file
+ * contents and the analyzer options, so that files sent again with the same contents are not
+ * parsed and analyzed again.
+ *
+ * <p>Only the findings are cached, not the analyzed compilation units. A cached AST would hold
+ * its attribute caches, which are not thread safe and often many times larger than the source,
+ * while cached findings are immutable and can be shared by concurrent requests. The analyzer options are the limits of the analysis
+ * budget, since the budget is the only configuration of the analysis. The total weight of the
+ * cached findings is bounded by an estimate of their size in bytes. Safe to use from multiple
+ * threads.
+ *
+ * <p>The findings of a file do not depend on its path, except for the path in each finding, so
+ * cached findings are relocated to the path of the request. Results of an analysis that skipped
+ * work due to the analysis budget are not cached.
+ */
+public class FindingsCache {
+
+  /** Estimated heap size of an entry, without its findings. */
+  private static final int BYTES_PER_ENTRY = 256;
+
+  /** Estimated heap size of a finding or fix, without its strings. */
+  private static final int BYTES_PER_FINDING = 96;
+
+  /** The findings of an analyzed file. Immutable. */
+  static class Entry {
+    /** The path that the findings were reported for. */
+    final String sourcePath;
+    final ImmutableList<ExtendJFinding> findings;
+    final int weight;
+
+    Entry(String sourcePath, Collection<ExtendJFinding> findings) {
+      this.sourcePath = sourcePath;
+      this.findings = ImmutableList.copyOf(findings);
+      this.weight = weigh(sourcePath, this.findings);
+    }
+  }
+
+  private final Cache<HashCode, Entry> cache;
+
+  /** Create a cache that holds findings with a total estimated size of up to maxBytes. */
+  public FindingsCache(long maxBytes) {
+    cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<HashCode, Entry>() {
+          @Override
+          public int weigh(HashCode key, Entry entry) {
+            return entry.weight;
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the findings for the file, analyzing it only if no file with the same contents was
+   * analyzed with the same budget limits. Throws {@code AnalysisCancelled} if the token is
+   * cancelled before the analysis completes.
+   */
+  public Collection<ExtendJFinding> analyzeFile(String sourcePath, AnalysisBudget budget,
+      CancellationToken token) throws IOException {
+    HashCode key = key(Files.readAllBytes(Paths.get(sourcePath)), budget);
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      long skippedBefore = skippedWork(budget);
+      entry = new Entry(sourcePath,
+          ExtendJAnalyzerFrontend.analyzeFile(sourcePath, budget, token));
+      // The budget is shared by concurrent analyses, so this may also skip caching complete
+      // results. It never caches incomplete ones.
+      if (skippedWork(budget) == skippedBefore) {
+        cache.put(key, entry);
+      }
+    }
+    return relocate(entry, sourcePath);
+  }
+
+  /** Remove all findings from the cache. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /** The statistics of this cache: hits, misses and evictions. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** The number of cached files. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** The cache key for the file contents analyzed with the limits of the budget. */
+  private static HashCode key(byte[] contents, AnalysisBudget budget) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(budget.maxCfgNodes);
+    hasher.putInt(budget.maxSearchEdges);
+    hasher.putLong(budget.maxFileMillis);
+    hasher.putBytes(contents);
+    return hasher.hash();
+  }
+
+  private static long skippedWork(AnalysisBudget budget) {
+    return budget.skippedMethods.get() + budget.abortedSearches.get()
+        + budget.timedOutSearches.get() + budget.timedOutFiles.get();
+  }
+
+  /** Returns the findings of the entry, reported for the given path. */
+  private static Collection<ExtendJFinding> relocate(Entry entry, String sourcePath) {
+    if (entry.sourcePath.equals(sourcePath)) {
+      return entry.findings;
+    }
+    List<ExtendJFinding> findings = new ArrayList<>(entry.findings.size());
+    for (ExtendJFinding finding : entry.findings) {
+      ExtendJFinding relocated = new ExtendJFinding(sourcePath, finding.subcategory,
+          finding.message, finding.startLine, finding.startColumn, finding.endLine,
+          finding.endColumn);
+      for (ExtendJFix fix : finding.fixes) {
+        relocated.addFix(fix.description, fix.startLine, fix.endLine, fix.newText);
+      }
+      findings.add(relocated);
+    }
+    return findings;
+  }
+
+  /** Estimate the heap size of the findings, counting two bytes per character. */
+  private static int weigh(String sourcePath, Collection<ExtendJFinding> findings) {
+    long bytes = BYTES_PER_ENTRY + 2L * sourcePath.length();
+    for (ExtendJFinding finding : findings) {
+      bytes += BYTES_PER_FINDING + 2L * finding.message.length();
+      for (ExtendJFix fix : finding.fixes) {
+        bytes += BYTES_PER_FINDING + 2L * (fix.description.length() + fix.newText.length());
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, bytes);
+  }
+}
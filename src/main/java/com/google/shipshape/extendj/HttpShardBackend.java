@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A shard backend that sends shards to an ExtendJService started with the --shard_port and
+ * --shard_token_file flags. The protocol is described in {@link ShardServer}.
+ */
+public class HttpShardBackend implements ShardBackend {
+  private final String host;
+  private final int port;
+  private final String token;
+  private final int timeoutMillis;
+
+  /**
+   * @param token the shared token of the backend server
+   * @param timeoutMillis connect and read timeout, or 0 for no timeout
+   */
+  public HttpShardBackend(String host, int port, String token, int timeoutMillis) {
+    this.host = host;
+    this.port = port;
+    this.token = token;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /** Parse a backend address of the form host:port. */
+  public static HttpShardBackend parse(String address, String token, int timeoutMillis) {
+    int colon = address.lastIndexOf(':');
+    if (colon <= 0) {
+      throw new IllegalArgumentException("Expected backend address host:port, got " + address);
+    }
+    return new HttpShardBackend(address.substring(0, colon),
+        Integer.parseInt(address.substring(colon + 1)), token, timeoutMillis);
+  }
+
+  @Override
+  public String name() {
+    return host + ":" + port;
+  }
+
+  @Override
+  public List<Note> analyze(ShipshapeContext shard) throws IOException {
+    URL url = new URL("http", host, port, ShardServer.PATH);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setConnectTimeout(timeoutMillis);
+      connection.setReadTimeout(timeoutMillis);
+      connection.setRequestProperty("Content-Type", ShardServer.CONTENT_TYPE);
+      connection.setRequestProperty(ShardServer.TOKEN_HEADER, token);
+      try (OutputStream out = connection.getOutputStream()) {
+        shard.writeTo(out);
+      }
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException(String.format("backend %s returned HTTP %d: %s",
+            name(), status, connection.getResponseMessage()));
+      }
+      List<Note> notes = new ArrayList<>();
+      try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+        Note note;
+        while ((note = Note.parseDelimitedFrom(in)) != null) {
+          notes.add(note);
+        }
+      }
+      return notes;
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
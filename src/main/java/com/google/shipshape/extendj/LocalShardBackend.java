@@ -0,0 +1,43 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.shipshape.service.StatelessAnalyzer;
+
+import java.util.List;
+
+/** A shard backend that runs an analyzer in the current process. */
+public class LocalShardBackend implements ShardBackend {
+  private final String name;
+  private final StatelessAnalyzer analyzer;
+
+  public LocalShardBackend(String name, StatelessAnalyzer analyzer) {
+    this.name = name;
+    this.analyzer = analyzer;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public List<Note> analyze(ShipshapeContext shard) throws Exception {
+    return analyzer.analyze(shard);
+  }
+}
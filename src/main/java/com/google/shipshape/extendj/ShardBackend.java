@@ -0,0 +1,34 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+
+import java.util.List;
+
+/** An analyzer instance that a {@link ShardCoordinator} can send a shard of files to. */
+public interface ShardBackend {
+  /** A short name for the backend, used in log messages. */
+  String name();
+
+  /**
+   * Analyze the files in the context and return the findings.
+   *
+   * @throws Exception if the shard could not be analyzed by this backend
+   */
+  List<Note> analyze(ShipshapeContext shard) throws Exception;
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.shipshape.service.AnalyzerException;
+import com.google.shipshape.service.ShipshapeLogger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the files of a request into shards, analyzes each shard on a separate backend, and
+ * merges the results.
+ *
+ * <p>Files are assigned to shards greedily by estimated cost: the most expensive remaining file
+ * goes to the shard with the lowest total cost so far. There is one shard per backend. A shard
+ * that fails on its backend is retried on the other backends in turn. A shard that fails on all
+ * backends does not fail the request: each of its files is reported as failed, and the findings
+ * of the other shards are returned. The analyses themselves are unchanged; each backend runs the
+ * normal ExtendJ analyzer on its shard.
+ */
+public class ShardCoordinator {
+
+  private static final ShipshapeLogger logger = ShipshapeLogger.getLogger(ShardCoordinator.class);
+
+  private final List<ShardBackend> backends;
+  private final FileCostModel costModel;
+  private final ExecutorService executor;
+
+  public ShardCoordinator(List<ShardBackend> backends, FileCostModel costModel) {
+    if (backends.isEmpty()) {
+      throw new IllegalArgumentException("At least one backend is required");
+    }
+    this.backends = ImmutableList.copyOf(backends);
+    this.costModel = costModel;
+    this.executor = Executors.newFixedThreadPool(backends.size(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("extendj-shard-%d").build());
+  }
+
+  /** A shard of a request, with the total estimated cost of its files. */
+  private static class Shard {
+    final int index;
+    final List<String> paths = new ArrayList<>();
+    double cost = 0;
+
+    Shard(int index) {
+      this.index = index;
+    }
+  }
+
+  /** A file and its estimated analysis cost. */
+  private static class FileCost {
+    final String path;
+    final double cost;
+
+    FileCost(String path, double cost) {
+      this.path = path;
+      this.cost = cost;
+    }
+  }
+
+  /**
+   * Analyze all files in the context, spread over the backends. Each file of a shard that failed
+   * on all backends is reported by a note with the subcategory
+   * {@link ShipshapeFindingAdapter#INCOMPLETE_ANALYSIS}.
+   *
+   * @throws AnalyzerException if every shard failed on all backends
+   */
+  public ImmutableList<Note> analyze(ShipshapeContext context) throws AnalyzerException {
+    List<FileStatus> failures = new ArrayList<>();
+    ImmutableList<Note> findings = analyze(context, failures);
+    ImmutableList.Builder<Note> notes = ImmutableList.builder();
+    notes.addAll(findings);
+    for (FileStatus failure : failures) {
+      notes.add(ShipshapeFindingAdapter.adapt(failure));
+    }
+    return notes.build();
+  }
+
+  /**
+   * Analyze all files in the context, spread over the backends. Returns the findings of the
+   * shards that were analyzed, and adds a failed status to the failures collection for each file
+   * of a shard that failed on all backends.
+   *
+   * @throws AnalyzerException if every shard failed on all backends
+   */
+  public ImmutableList<Note> analyze(ShipshapeContext context, Collection<FileStatus> failures)
+      throws AnalyzerException {
+    List<Shard> shards = partition(context);
+    List<Future<List<Note>>> futures = new ArrayList<>();
+    for (final Shard shard : shards) {
+      final ShipshapeContext shardContext = context.toBuilder()
+          .clearFilePath()
+          .addAllFilePath(shard.paths)
+          .build();
+      futures.add(executor.submit(new Callable<List<Note>>() {
+        @Override
+        public List<Note> call() throws Exception {
+          return analyzeShard(shard.index, shardContext);
+        }
+      }));
+    }
+    ImmutableList.Builder<Note> notes = ImmutableList.builder();
+    Throwable lastFailure = null;
+    int failedShards = 0;
+    for (int i = 0; i < futures.size(); ++i) {
+      try {
+        notes.addAll(futures.get(i).get());
+      } catch (InterruptedException e) {
+        // Stop the shards that are still running so that they do not hold the worker threads.
+        for (Future<List<Note>> future : futures) {
+          future.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw new AnalyzerException(ExtendJAnalyzer.CATEGORY, context,
+            "Interrupted while waiting for shards", e);
+      } catch (ExecutionException e) {
+        lastFailure = e.getCause();
+        failedShards += 1;
+        String message = String.format("shard %d failed on all backends: %s",
+            i, lastFailure.getMessage());
+        logger.warning(message, context, ExtendJAnalyzer.CATEGORY);
+        for (String path : shards.get(i).paths) {
+          failures.add(FileStatus.failed(path, message));
+        }
+      }
+    }
+    if (failedShards > 0 && failedShards == shards.size()) {
+      // Nothing was analyzed, report the failure for the whole request.
+      throw new AnalyzerException(ExtendJAnalyzer.CATEGORY, context,
+          "All shards failed: " + lastFailure.getMessage(), lastFailure);
+    }
+    return notes.build();
+  }
+
+  /** Split the files in the context into one shard per backend, balanced by estimated cost. */
+  private List<Shard> partition(ShipshapeContext context) {
+    String root = ExtendJAnalyzer.repoRoot(context);
+    List<FileCost> files = new ArrayList<>();
+    for (String path : context.getFilePathList()) {
+      File file = new File(root + path);
+      files.add(new FileCost(path, costModel.estimate(path, file.length())));
+    }
+    Collections.sort(files, new Comparator<FileCost>() {
+      @Override
+      public int compare(FileCost a, FileCost b) {
+        return Double.compare(b.cost, a.cost);
+      }
+    });
+    List<Shard> shards = new ArrayList<>();
+    for (int i = 0; i < backends.size(); ++i) {
+      shards.add(new Shard(i));
+    }
+    for (FileCost file : files) {
+      Shard smallest = shards.get(0);
+      for (Shard shard : shards) {
+        if (shard.cost < smallest.cost) {
+          smallest = shard;
+        }
+      }
+      smallest.paths.add(file.path);
+      smallest.cost += file.cost;
+    }
+    List<Shard> nonEmpty = new ArrayList<>();
+    for (Shard shard : shards) {
+      if (!shard.paths.isEmpty()) {
+        nonEmpty.add(shard);
+      }
+    }
+    return nonEmpty;
+  }
+
+  /**
+   * Analyze a shard, starting on the backend with the same index as the shard and trying the
+   * other backends in turn if it fails.
+   */
+  private List<Note> analyzeShard(int index, ShipshapeContext shard) throws Exception {
+    Exception lastFailure = null;
+    for (int attempt = 0; attempt < backends.size(); ++attempt) {
+      ShardBackend backend = backends.get((index + attempt) % backends.size());
+      try {
+        return backend.analyze(shard);
+      } catch (Exception e) {
+        logger.warning(String.format("Shard %d failed on backend %s: %s",
+            index, backend.name(), e.getMessage()), shard, ExtendJAnalyzer.CATEGORY);
+        lastFailure = e;
+      }
+    }
+    throw lastFailure;
+  }
+
+  /** Stop the shard worker threads. */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes a list of files by sharding them over several ExtendJService backends started with
+ * the --shard_port and --shard_token_file flags, and prints the merged findings.
+ */
+class ShardCoordinatorMain {
+
+  @Parameter(names = "--backends", required = true,
+      description = "comma-separated list of shard backends, as host:port")
+  private List<String> backends = new ArrayList<>();
+
+  @Parameter(names = "--repo_root", description = "root directory of the files to analyze")
+  private String repoRoot = "";
+
+  @Parameter(names = "--shard_token_file", required = true,
+      description = "file containing the shared token of the shard backends")
+  private String shardTokenFile;
+
+  @Parameter(names = "--timeout_millis", description = "timeout for each shard request")
+  private int timeoutMillis = 0;
+
+  @Parameter(description = "files to analyze, relative to the repository root")
+  private List<String> files = new ArrayList<>();
+
+  public static void main(String[] args) throws Exception {
+    ShardCoordinatorMain main = new ShardCoordinatorMain();
+    new JCommander(main, args);
+
+    String token = ShardServer.readToken(Paths.get(main.shardTokenFile));
+    List<ShardBackend> backends = new ArrayList<>();
+    for (String address : main.backends) {
+      backends.add(HttpShardBackend.parse(address, token, main.timeoutMillis));
+    }
+    ShardCoordinator coordinator = new ShardCoordinator(backends, new FileCostModel());
+    try {
+      ShipshapeContext context = ShipshapeContext.newBuilder()
+          .setRepoRoot(main.repoRoot)
+          .addAllFilePath(main.files)
+          .build();
+      List<Note> notes = coordinator.analyze(context);
+      System.out.println("Found " + notes.size() + " findings.");
+      for (Note note : notes) {
+        System.out.format("%s:%d:%d: %s\n", note.getLocation().getPath(),
+            note.getLocation().getRange().getStartLine(),
+            note.getLocation().getRange().getStartColumn(),
+            note.getDescription());
+      }
+    } finally {
+      coordinator.shutdown();
+    }
+  }
+}
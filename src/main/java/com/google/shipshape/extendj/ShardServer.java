@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.shipshape.service.StatelessAnalyzer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves shard analysis requests from a {@link ShardCoordinator}.
+ *
+ * <p>A request is an HTTP POST to {@link #PATH} with a binary ShipshapeContext proto as body. The
+ * response body is the sequence of Note protos found, each written with writeDelimitedTo. A
+ * failed analysis gives an HTTP 500 response with the error message as body.
+ *
+ * <p>The server analyzes any file that a request names, so it only accepts requests with the
+ * shared token in the {@link #TOKEN_HEADER} header. Requests without the token are rejected with
+ * HTTP 401 before the body is read. The server should be bound to the loopback interface unless
+ * the coordinator runs on another host.
+ */
+public class ShardServer {
+  public static final String PATH = "/extendj/shard";
+  public static final String CONTENT_TYPE = "application/x-protobuf";
+  public static final String TOKEN_HEADER = "X-ExtendJ-Shard-Token";
+
+  private final HttpServer server;
+
+  /**
+   * @param address the address to bind to, such as {@code InetAddress.getLoopbackAddress()}
+   * @param port the port to listen on, or 0 for an ephemeral port
+   * @param token the shared token that requests must include
+   */
+  public ShardServer(InetAddress address, int port, String token,
+      final StatelessAnalyzer analyzer, int threads) throws IOException {
+    if (token == null || token.isEmpty()) {
+      throw new IllegalArgumentException("A shard token is required");
+    }
+    final byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+    server = HttpServer.create(new InetSocketAddress(address, port), 0);
+    server.setExecutor(Executors.newFixedThreadPool(Math.max(1, threads)));
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          String requestToken = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+          if (requestToken == null || !MessageDigest.isEqual(tokenBytes,
+              requestToken.getBytes(StandardCharsets.UTF_8))) {
+            sendError(exchange, 401, "invalid shard token");
+            return;
+          }
+          if (!"POST".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "POST required");
+            return;
+          }
+          ShipshapeContext shard;
+          try (InputStream in = exchange.getRequestBody()) {
+            shard = ShipshapeContext.parseFrom(in);
+          }
+          List<Note> notes;
+          try {
+            notes = analyzer.analyze(shard);
+          } catch (Exception e) {
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+            return;
+          }
+          exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody())) {
+            for (Note note : notes) {
+              note.writeDelimitedTo(out);
+            }
+          }
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+  }
+
+  private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /** Read a shard token from the first line of a file. */
+  public static String readToken(Path file) throws IOException {
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    String token = lines.isEmpty() ? "" : lines.get(0).trim();
+    if (token.isEmpty()) {
+      throw new IOException("No shard token in " + file);
+    }
+    return token;
+  }
+
+  /** The address the server is listening on. */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  /** Start serving requests in the background. */
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+}
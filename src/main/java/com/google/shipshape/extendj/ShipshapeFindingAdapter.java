@@ -38,6 +38,9 @@ import java.util.Collection;
  */
 public class ShipshapeFindingAdapter {
 
+  /** The subcategory of notes for files that timed out or failed. */
+  public static final String INCOMPLETE_ANALYSIS = "IncompleteAnalysis";
+
   /**
    * Build a Shipshape note from an ExtendJ finding. To build a Note proto we take an
    * ExtendJFinding, a ShipshapeContext, and a path prefix. The path prefix is stripped from the
@@ -65,6 +68,23 @@ public class ShipshapeFindingAdapter {
     return note.build();
   }
 
+  /**
+   * Build a Shipshape note reporting a file that was not completely analyzed, so that clients can
+   * tell files that timed out or failed from files without findings. The note has the
+   * subcategory {@link #INCOMPLETE_ANALYSIS} and no text range.
+   *
+   * @param status The status of a file that timed out or failed, with a project-relative path.
+   */
+  public static Note adapt(FileStatus status) {
+    return Note.newBuilder()
+        .setLocation(Location.newBuilder().setPath(status.path))
+        .setDescription(String.format("Incomplete analysis (%s): %s", status.status,
+            status.message))
+        .setCategory(ExtendJAnalyzer.CATEGORY)
+        .setSubcategory(INCOMPLETE_ANALYSIS)
+        .build();
+  }
+
   /**
    * Copy an ExtendJFix to a NotesProto.Fix.
    *
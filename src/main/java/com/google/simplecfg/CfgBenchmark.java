@@ -0,0 +1,178 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import com.google.simplecfg.ast.BodyDecl;
+import com.google.simplecfg.ast.CfgCachePolicy;
+import com.google.simplecfg.ast.CfgExceptionModel;
+import com.google.simplecfg.ast.CfgProfile;
+import com.google.simplecfg.ast.CfgSize;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures CFG size and construction time for the Java files given on the command line, for
+ * each CFG construction mode.
+ *
+ * <p>For each mode, the total number of CFG nodes and edges over all body declarations is
+ * printed together with the reduction compared to the default construction mode.
+ *
+ * <p>The {@code -policy=NAME} option selects the cache policy for the entry() and follow()
+ * attributes: {@code on-demand}, {@code lazy} (the default), or {@code per-cfg}. With the
+ * {@code -profile} option the evaluations of the entry() and follow() equations are profiled in
+ * the default mode, and the hottest equations are printed for each file.
+ */
+public class CfgBenchmark {
+
+  /** A CFG construction mode to measure. */
+  private static class Mode {
+    final String name;
+    final CfgExceptionModel exceptionModel;
+    final boolean sharedFinally;
+
+    Mode(String name, CfgExceptionModel exceptionModel, boolean sharedFinally) {
+      this.name = name;
+      this.exceptionModel = exceptionModel;
+      this.sharedFinally = sharedFinally;
+    }
+  }
+
+  private static final Mode[] MODES = {
+    new Mode("default", CfgExceptionModel.PER_CALL, false),
+    new Mode("per-region exceptions", CfgExceptionModel.PER_REGION, false),
+    new Mode("shared finally", CfgExceptionModel.PER_CALL, true),
+    new Mode("per-region + shared", CfgExceptionModel.PER_REGION, true),
+  };
+
+  public static void main(String args[]) {
+    int exitCode = new CfgBenchmark().run(args);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  /** The number of equations to print for each file when profiling. */
+  private static final int PROFILE_LIMIT = 10;
+
+  private CfgCachePolicy policy = CfgCachePolicy.LAZY;
+  private boolean profile = false;
+
+  /** The profiles for each file in the default mode. */
+  private final Map<String, CfgProfile> profiles = new LinkedHashMap<String, CfgProfile>();
+
+  private int run(String allArgs[]) {
+    List<String> args = new ArrayList<String>();
+    for (String arg : allArgs) {
+      if (arg.startsWith("-policy=")) {
+        try {
+          policy = CfgCachePolicy.valueOf(
+              arg.substring("-policy=".length()).toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+          System.err.println("Unknown cache policy: " + arg);
+          return 1;
+        }
+      } else if (arg.equals("-profile")) {
+        profile = true;
+      } else {
+        args.add(arg);
+      }
+    }
+    if (args.isEmpty()) {
+      System.err.println("Usage: CfgBenchmark [-policy=on-demand|lazy|per-cfg] [-profile] FILE...");
+      return 1;
+    }
+    long baseNodes = 0;
+    long baseEdges = 0;
+    System.out.format("%-24s %10s %10s %10s\n", "mode", "nodes", "edges", "time (ms)");
+    for (Mode mode : MODES) {
+      long nodes = 0;
+      long edges = 0;
+      long time = 0;
+      for (String path : args) {
+        try {
+          Program program = program(mode);
+          Collection<BodyDecl> bodyDecls = parse(path, program);
+          long start = System.nanoTime();
+          for (BodyDecl bd : bodyDecls) {
+            CfgSize size = bd.entry().size();
+            nodes += size.nodes;
+            edges += size.edges;
+          }
+          time += System.nanoTime() - start;
+          if (mode == MODES[0] && profile) {
+            profiles.put(path, program.takeCfgProfile());
+          }
+        } catch (Exception e) {
+          System.err.println("Failed to parse input file: " + path);
+          e.printStackTrace();
+          return 1;
+        }
+      }
+      if (mode == MODES[0]) {
+        baseNodes = nodes;
+        baseEdges = edges;
+        System.out.format("%-24s %10d %10d %10d\n", mode.name, nodes, edges, time / 1000000);
+      } else {
+        System.out.format("%-24s %10d %10d %10d  (%s nodes, %s edges)\n",
+            mode.name, nodes, edges, time / 1000000,
+            reduction(baseNodes, nodes), reduction(baseEdges, edges));
+      }
+    }
+    for (Map.Entry<String, CfgProfile> entry : profiles.entrySet()) {
+      CfgProfile fileProfile = entry.getValue();
+      System.out.format("\n%s: %d entry/follow evaluations\n",
+          entry.getKey(), fileProfile.evaluations());
+      for (CfgProfile.Equation equation : fileProfile.hottest(PROFILE_LIMIT)) {
+        System.out.format("  %-40s %10d %10.3f ms\n",
+            equation.name, equation.evaluations, equation.nanos / 1e6);
+      }
+    }
+    return 0;
+  }
+
+  private Program program(Mode mode) {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.BASE_LIBRARY_FILTER);
+    program.setExceptionModel(mode.exceptionModel);
+    program.setSharedFinallyCfg(mode.sharedFinally);
+    program.setCfgCachePolicy(policy);
+    program.setCfgProfiling(mode == MODES[0] && profile);
+    return program;
+  }
+
+  private static Collection<BodyDecl> parse(String path, Program program) throws Exception {
+    CompilationUnit unit = SourceParser.forCurrentThread().parseFile(path);
+    // Attach the parsed unit to a program node so we have a healthy AST.
+    program.addCompilationUnit(unit);
+    // Ensure compilation unit is set to final. This is important to get
+    // caching to work right in the AST.
+    unit = program.getCompilationUnit(0);
+    return new ArrayList<BodyDecl>(unit.bodyDecls());
+  }
+
+  private static String reduction(long base, long value) {
+    if (base == 0) {
+      return "-";
+    }
+    return String.format("%+.1f%%", 100.0 * (value - base) / base);
+  }
+}
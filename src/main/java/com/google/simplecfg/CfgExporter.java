@@ -0,0 +1,264 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import com.google.simplecfg.ast.BodyDecl;
+import com.google.simplecfg.ast.CfgNode;
+import com.google.simplecfg.ast.FrozenCfg;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the CFGs of body declarations to an output stream in one of the supported formats.
+ *
+ * <p>An exporter buffers its output, and must be closed to flush the output. Exporters are not
+ * thread safe; use one exporter per output stream.
+ */
+public abstract class CfgExporter implements AutoCloseable {
+
+  /** The supported export formats. */
+  public enum Format {
+    /** One dot graph per body declaration. */
+    DOT("dot"),
+    /** One JSON object per body declaration and line. */
+    JSONL("jsonl"),
+    /** Binary edge lists, see {@link BinaryExporter}. */
+    BIN("bin");
+
+    /** The file extension used for this format. */
+    public final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    /** Find the format with the given name. Throws IllegalArgumentException for unknown names. */
+    public static Format forName(String name) {
+      for (Format format : values()) {
+        if (format.extension.equals(name)) {
+          return format;
+        }
+      }
+      throw new IllegalArgumentException("unknown CFG export format: " + name);
+    }
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Write the reverse CFGs instead of the forward CFGs. */
+  protected final boolean reverse;
+
+  protected CfgExporter(boolean reverse) {
+    this.reverse = reverse;
+  }
+
+  /** Create an exporter for the given format that writes to the output stream. */
+  public static CfgExporter create(Format format, OutputStream out, boolean reverse) {
+    switch (format) {
+      case DOT:
+        return new DotExporter(out, reverse);
+      case JSONL:
+        return new JsonExporter(out, reverse);
+      case BIN:
+        return new BinaryExporter(out, reverse);
+    }
+    throw new IllegalArgumentException("unknown CFG export format: " + format);
+  }
+
+  /** Write the CFG of the body declaration, which is declared in the given source file. */
+  public abstract void export(String path, BodyDecl bd) throws IOException;
+
+  @Override
+  public abstract void close() throws IOException;
+
+  /** The nodes of the CFG to write, in breadth-first order from the entry (or exit) node. */
+  protected List<CfgNode> nodes(BodyDecl bd) {
+    return bd.cfgNodes(reverse);
+  }
+
+  /** Number the nodes in the order they are listed. */
+  protected static Map<CfgNode, Integer> index(List<CfgNode> nodes) {
+    Map<CfgNode, Integer> index = new IdentityHashMap<CfgNode, Integer>();
+    for (CfgNode node : nodes) {
+      index.put(node, index.size());
+    }
+    return index;
+  }
+
+  private static PrintWriter writer(OutputStream out) {
+    return new PrintWriter(new BufferedWriter(
+        new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+  }
+
+  /** Writes dot graphs, in the same format as {@code BodyDecl.printCfg()}. */
+  static class DotExporter extends CfgExporter {
+    private final PrintWriter out;
+
+    DotExporter(OutputStream out, boolean reverse) {
+      super(reverse);
+      this.out = writer(out);
+    }
+
+    @Override
+    public void export(String path, BodyDecl bd) {
+      if (reverse) {
+        bd.printReverseCfg(out);
+      } else {
+        bd.printCfg(out);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+      if (out.checkError()) {
+        throw new IOException("failed to write CFG");
+      }
+    }
+  }
+
+  /**
+   * Writes one JSON object per line. Each object has the source file, the graph name, the line
+   * of the body declaration, a node list and an edge list. The nodes are numbered by their
+   * position in the node list, with the first node at position 0.
+   */
+  static class JsonExporter extends CfgExporter {
+    private final PrintWriter out;
+
+    JsonExporter(OutputStream out, boolean reverse) {
+      super(reverse);
+      this.out = writer(out);
+    }
+
+    @Override
+    public void export(String path, BodyDecl bd) {
+      List<CfgNode> nodes = nodes(bd);
+      Map<CfgNode, Integer> index = index(nodes);
+      out.print("{\"file\":");
+      out.print(JsonStrings.quote(path));
+      out.print(",\"graph\":");
+      out.print(JsonStrings.quote(bd.graphName()));
+      out.print(",\"line\":");
+      out.print(BodyDecl.getLine(bd.getStart()));
+      out.print(",\"nodes\":[");
+      for (int i = 0; i < nodes.size(); ++i) {
+        CfgNode node = nodes.get(i);
+        if (i > 0) {
+          out.print(',');
+        }
+        out.print("{\"kind\":");
+        out.print(JsonStrings.quote(node.nodeKind()));
+        out.print(",\"label\":");
+        out.print(JsonStrings.quote(node.name()));
+        out.print('}');
+      }
+      out.print("],\"edges\":[");
+      boolean first = true;
+      for (CfgNode node : nodes) {
+        int source = index.get(node);
+        for (CfgNode succ : node.neighbors(reverse)) {
+          if (!first) {
+            out.print(',');
+          }
+          first = false;
+          out.print('[');
+          out.print(source);
+          out.print(',');
+          out.print(index.get(succ));
+          out.print(']');
+        }
+      }
+      out.print("]}\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+      if (out.checkError()) {
+        throw new IOException("failed to write CFG");
+      }
+    }
+  }
+
+  /**
+   * Writes binary edge lists. The output starts with the four bytes {@code SCFG} followed by a
+   * format version. Then for each CFG: the source file and graph name as modified UTF-8 strings,
+   * the line of the body declaration, the number of nodes, one kind byte per node (see
+   * {@code FrozenCfg.kindCode}), the number of edges, and the source and target node numbers of
+   * each edge. Numbers are big-endian 32-bit integers, and the nodes are numbered in breadth-first
+   * order from the first node.
+   */
+  static class BinaryExporter extends CfgExporter {
+    static final int MAGIC = 0x53434647;
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private boolean headerWritten = false;
+
+    BinaryExporter(OutputStream out, boolean reverse) {
+      super(reverse);
+      this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void export(String path, BodyDecl bd) throws IOException {
+      writeHeader();
+      List<CfgNode> nodes = nodes(bd);
+      Map<CfgNode, Integer> index = index(nodes);
+      out.writeUTF(path);
+      out.writeUTF(bd.graphName());
+      out.writeInt(BodyDecl.getLine(bd.getStart()));
+      out.writeInt(nodes.size());
+      int edges = 0;
+      for (CfgNode node : nodes) {
+        out.writeByte(FrozenCfg.kindCode(node.nodeKind()));
+        edges += node.neighbors(reverse).size();
+      }
+      out.writeInt(edges);
+      for (CfgNode node : nodes) {
+        int source = index.get(node);
+        for (CfgNode succ : node.neighbors(reverse)) {
+          out.writeInt(source);
+          out.writeInt(index.get(succ));
+        }
+      }
+    }
+
+    private void writeHeader() throws IOException {
+      if (!headerWritten) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        headerWritten = true;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      writeHeader();
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,419 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.MethodSummaryCache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches source directories and re-analyzes Java files when they change.
+ *
+ * <p>All Java files in the watched directories are analyzed when the daemon starts. After that,
+ * the daemon waits for file system events, and when no new event has arrived for the debounce
+ * period the files changed since the last analysis are analyzed again. A burst of events, such
+ * as an editor writing a file in several steps or a version control checkout, results in one
+ * analysis of each changed file.
+ *
+ * <p>For each analyzed file, the daemon writes a record with the path and the number of findings
+ * followed by all findings for the file, to stdout and to each client connected to the findings
+ * port. A deleted file is reported with zero findings. A client that connects receives the
+ * current findings for all files before the updates.
+ *
+ * <p>Each file is analyzed in its own program, as with {@code -release-units}. The generated AST
+ * does not support flushing attributes, so replacing a compilation unit in a long-lived program
+ * would leave attribute values computed from the old source. What stays warm between analyses is
+ * the JVM, the per-thread source parser, and the method summary cache, whose keys include a hash
+ * of the summarized methods and therefore stay valid as files change.
+ *
+ * <p>Usage: {@code ExtendJAnalyzerDaemon [-debounce-millis=N] [-findings-format=text|jsonl]
+ * [-findings-port=N] [analyzer options] DIR...}
+ */
+public class ExtendJAnalyzerDaemon {
+
+  private static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+  private final List<Path> roots;
+  private final String[] analyzerArgs;
+  private final long debounceMillis;
+  private final FindingsWriter.Format format;
+
+  /** The shared method summary cache, or {@code null} if summaries are disabled. */
+  private final MethodSummaryCache summaryCache;
+
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+
+  /** The current findings of each analyzed file, ordered by path. Guarded by this. */
+  private final Map<String, Collection<ExtendJFinding>> findings =
+      new TreeMap<String, Collection<ExtendJFinding>>();
+
+  /** The clients that receive findings updates. Guarded by this. */
+  private final List<Client> clients = new ArrayList<Client>();
+
+  /**
+   * A writer that receives findings updates. Writes to the client are done without holding the
+   * daemon lock, so that a slow client does not block the analysis or other clients, and are
+   * ordered by the client lock.
+   */
+  private static class Client {
+    final FindingsWriter writer;
+    final Lock lock = new ReentrantLock();
+
+    Client(FindingsWriter writer) {
+      this.writer = writer;
+    }
+  }
+
+  ExtendJAnalyzerDaemon(List<Path> roots, String[] analyzerArgs, long debounceMillis,
+      FindingsWriter.Format format) throws IOException {
+    this.roots = roots;
+    this.analyzerArgs = analyzerArgs;
+    this.debounceMillis = debounceMillis;
+    this.format = format;
+    this.summaryCache = Arrays.asList(analyzerArgs).contains("-method-summaries")
+        ? new MethodSummaryCache() : null;
+    this.watchService = FileSystems.getDefault().newWatchService();
+  }
+
+  /**
+   * Run the analysis daemon on the directories supplied on the command line.
+   * @param args command-line arguments
+   */
+  public static void main(String[] args) {
+    long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    FindingsWriter.Format format = FindingsWriter.Format.TEXT;
+    int port = 0;
+    List<Path> roots = new ArrayList<Path>();
+    List<String> analyzerArgs = new ArrayList<String>();
+    try {
+      for (String arg : args) {
+        if (arg.startsWith("-debounce-millis=")) {
+          debounceMillis = Long.parseLong(arg.substring("-debounce-millis=".length()));
+        } else if (arg.startsWith("-findings-format=")) {
+          format = FindingsWriter.Format.forName(arg.substring("-findings-format=".length()));
+          if (!format.supportsFileUpdates()) {
+            throw new IllegalArgumentException(
+                format.name + " output is not supported in watch mode");
+          }
+        } else if (arg.startsWith("-findings-port=")) {
+          port = Integer.parseInt(arg.substring("-findings-port=".length()));
+        } else if (arg.startsWith("-")) {
+          analyzerArgs.add(arg);
+        } else {
+          roots.add(Paths.get(arg));
+        }
+      }
+      if (roots.isEmpty()) {
+        throw new IllegalArgumentException("no source directories to watch");
+      }
+      for (Path root : roots) {
+        if (!Files.isDirectory(root)) {
+          throw new IllegalArgumentException("not a directory: " + root);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      // Also catches NumberFormatException.
+      System.err.println("Error: " + e.getMessage());
+      System.exit(ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR);
+    }
+
+    try {
+      ExtendJAnalyzerDaemon daemon = new ExtendJAnalyzerDaemon(roots,
+          analyzerArgs.toArray(new String[0]), debounceMillis, format);
+      daemon.addWriter(FindingsWriter.create(format, Channels.newChannel(System.out)));
+      if (port > 0) {
+        daemon.listen(port);
+      }
+      daemon.run();
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(ExtendJAnalyzerFrontend.EXIT_SYSTEM_ERROR);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Analyze all files in the watched directories, and then analyze the changed files after each
+   * burst of file system events. Runs until the thread is interrupted.
+   */
+  void run() throws IOException, InterruptedException {
+    analyze(registerAll());
+    while (true) {
+      Set<Path> changed = new LinkedHashSet<Path>();
+      boolean overflow = collectChanges(watchService.take(), changed);
+      // Wait until no new event arrives for the debounce period.
+      WatchKey key;
+      while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+        overflow |= collectChanges(key, changed);
+      }
+      if (overflow) {
+        // Events were lost, so every file may have changed.
+        changed.addAll(registerAll());
+        changed.addAll(analyzedFiles());
+      }
+      analyze(changed);
+    }
+  }
+
+  /**
+   * Add the changed Java files for the events of the key to the changed set, and start watching
+   * new directories. Returns {@code true} if events were lost.
+   */
+  private boolean collectChanges(WatchKey key, Set<Path> changed) throws IOException {
+    boolean overflow = false;
+    Path directory = watchedDirectories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflow = true;
+        continue;
+      }
+      if (directory == null) {
+        continue;
+      }
+      Path path = directory.resolve((Path) event.context());
+      if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+        // Files can be added to the new directory before it is registered.
+        changed.addAll(register(path));
+      } else if (isJavaFile(path)) {
+        changed.add(path);
+      }
+    }
+    if (!key.reset()) {
+      // The directory was deleted.
+      watchedDirectories.remove(key);
+    }
+    return overflow;
+  }
+
+  /** Watch all directories in the roots. Returns the Java files in the roots. */
+  private Collection<Path> registerAll() throws IOException {
+    Collection<Path> files = new LinkedHashSet<Path>();
+    for (Path root : roots) {
+      files.addAll(register(root));
+    }
+    return files;
+  }
+
+  /** Watch the directory and its subdirectories. Returns the Java files in the directories. */
+  private Collection<Path> register(Path start) throws IOException {
+    final Collection<Path> files = new ArrayList<Path>();
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+          throws IOException {
+        WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        watchedDirectories.put(key, dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (isJavaFile(file)) {
+          files.add(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return files;
+  }
+
+  private static boolean isJavaFile(Path path) {
+    return path.toString().endsWith(".java");
+  }
+
+  private synchronized Collection<Path> analyzedFiles() {
+    Collection<Path> files = new ArrayList<Path>();
+    for (String path : findings.keySet()) {
+      files.add(Paths.get(path));
+    }
+    return files;
+  }
+
+  /**
+   * Analyze the files and send the findings of each file to the writers. Files that no longer
+   * exist are reported with zero findings.
+   */
+  void analyze(Collection<Path> files) {
+    for (Path file : files) {
+      String path = file.toString();
+      Collection<ExtendJFinding> fileFindings;
+      if (Files.isRegularFile(file)) {
+        fileFindings = analyzeFile(path);
+        if (fileFindings == null) {
+          // Keep the previous findings until the file can be analyzed again.
+          continue;
+        }
+      } else {
+        if (!hasFindings(path)) {
+          continue;
+        }
+        fileFindings = Collections.emptyList();
+      }
+      update(path, fileFindings);
+    }
+  }
+
+  /** Analyze one file in a new program. Returns {@code null} if the analysis failed. */
+  private Collection<ExtendJFinding> analyzeFile(String path) {
+    String[] args = Arrays.copyOf(analyzerArgs, analyzerArgs.length + 1);
+    args[analyzerArgs.length] = path;
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    checker.setMethodSummaryCache(summaryCache);
+    try {
+      int result = checker.run(args);
+      if (result != ExtendJAnalyzerFrontend.EXIT_SUCCESS) {
+        System.err.println("Warning: failed to analyze " + path + " (exit code " + result + ")");
+        return null;
+      }
+    } catch (RuntimeException | Error e) {
+      System.err.println("Warning: failed to analyze " + path + ": " + e);
+      return null;
+    }
+    return new ArrayList<ExtendJFinding>(checker.getFindings());
+  }
+
+  private synchronized boolean hasFindings(String path) {
+    return findings.containsKey(path);
+  }
+
+  /** Record the findings of the file and send them to all writers. */
+  private void update(String path, Collection<ExtendJFinding> fileFindings) {
+    List<Client> receivers;
+    synchronized (this) {
+      if (fileFindings.isEmpty() && !Files.exists(Paths.get(path))) {
+        findings.remove(path);
+      } else {
+        findings.put(path, fileFindings);
+      }
+      receivers = new ArrayList<Client>(clients);
+    }
+    for (Client client : receivers) {
+      client.lock.lock();
+      try {
+        client.writer.writeFile(path, fileFindings);
+      } catch (IOException e) {
+        // The client disconnected.
+        removeClient(client);
+      } finally {
+        client.lock.unlock();
+      }
+    }
+  }
+
+  private void removeClient(Client client) {
+    synchronized (this) {
+      clients.remove(client);
+    }
+    closeQuietly(client.writer);
+  }
+
+  /** Returns the current findings of each analyzed file. */
+  synchronized Map<String, Collection<ExtendJFinding>> getFindings() {
+    return new TreeMap<String, Collection<ExtendJFinding>>(findings);
+  }
+
+  /**
+   * Send the current findings of all files to the writer, and send all later updates to it. The
+   * writer is dropped when writing to it fails.
+   */
+  void addWriter(FindingsWriter writer) {
+    Client client = new Client(writer);
+    // Updates that are not in the snapshot wait for the client lock, and so are written after
+    // the snapshot.
+    client.lock.lock();
+    try {
+      Map<String, Collection<ExtendJFinding>> snapshot;
+      synchronized (this) {
+        snapshot = new TreeMap<String, Collection<ExtendJFinding>>(findings);
+        clients.add(client);
+      }
+      for (Map.Entry<String, Collection<ExtendJFinding>> entry : snapshot.entrySet()) {
+        writer.writeFile(entry.getKey(), entry.getValue());
+      }
+    } catch (IOException e) {
+      removeClient(client);
+    } finally {
+      client.lock.unlock();
+    }
+  }
+
+  /** Accept findings clients on the loopback interface in a background thread. */
+  private void listen(int port) throws IOException {
+    final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (true) {
+          try {
+            Socket socket = serverSocket.accept();
+            socket.shutdownInput();
+            addWriter(FindingsWriter.create(format,
+                Channels.newChannel(socket.getOutputStream())));
+          } catch (IOException e) {
+            System.err.println("Warning: failed to accept findings client: " + e.getMessage());
+          }
+        }
+      }
+    }, "findings-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    System.err.format("Sending findings to clients at %s\n",
+        serverSocket.getLocalSocketAddress());
+  }
+
+  private static void closeQuietly(FindingsWriter writer) {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      // Already failed.
+    }
+  }
+}
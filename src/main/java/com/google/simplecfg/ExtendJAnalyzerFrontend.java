@@ -15,38 +15,111 @@
  */
 package com.google.simplecfg;
 
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.AnalysisCancelled;
+import com.google.simplecfg.ast.AnalysisPartition;
 import com.google.simplecfg.ast.BytecodeParser;
 import com.google.simplecfg.ast.BytecodeReader;
+import com.google.simplecfg.ast.CancellationToken;
+import com.google.simplecfg.ast.CfgTracer;
 import com.google.simplecfg.ast.CompilationUnit;
 import com.google.simplecfg.ast.ExtendJFinding;
 import com.google.simplecfg.ast.Frontend;
 import com.google.simplecfg.ast.JavaParser;
+import com.google.simplecfg.ast.MethodSummaryCache;
+import com.google.simplecfg.ast.Options;
+import com.google.simplecfg.ast.Problem;
 import com.google.simplecfg.ast.Program;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Produces findings using analyzers implemented in the ExtendJ compiler.
  */
 public class ExtendJAnalyzerFrontend extends Frontend {
 
+  /**
+   * Emits the traced CFG operations of all analyzed programs as Flight Recorder events, or
+   * records nothing if this JVM does not have the Flight Recorder API.
+   */
+  private static final CfgTracer CFG_TRACER = flightRecorderTracer();
+
+  /** The stack size for retrying a failed file, so that deeply nested code can be analyzed. */
+  private static final long RETRY_STACK_BYTES = 512L * 1024 * 1024;
+
   private final JavaParser javaParser;
   private final BytecodeReader bytecodeReader;
-  private final Collection<ExtendJFinding> findings = new ArrayList<ExtendJFinding>();
+  private final List<ExtendJFinding> findings = new ArrayList<ExtendJFinding>();
+
+  /** The error message for each file that could not be analyzed, by path. */
+  private final Map<String, String> fileErrors = new LinkedHashMap<String, String>();
+
+  /** True if this analyzer retries a failed file, in which case it does not retry again. */
+  private boolean isRetry = false;
+
+  /** The analysis budget, or {@code null} if the budget is given by command-line options. */
+  private AnalysisBudget budget;
+
+  private CancellationToken cancellationToken = CancellationToken.NONE;
+
+  /**
+   * The analysis units analyzed by this worker, or {@code null} if this analyzer is not a
+   * worker for another analyzer and the partitioning is given by the command-line options.
+   */
+  private final AnalysisPartition workerPartition;
+
+  /** Receives the findings of each compilation unit as soon as it is analyzed, if not null. */
+  private FindingsWriter findingsWriter = null;
+
+  /**
+   * The method summary cache, shared with the worker analyzers. If {@code null}, method
+   * summaries are enabled by the {@code -method-summaries} option.
+   */
+  private MethodSummaryCache summaryCache = null;
+
+  /** The number of threads that compute the method summaries, from {@code -summary-workers}. */
+  private int summaryWorkers = 1;
 
   /** Create new analyzer instance.  */
   public ExtendJAnalyzerFrontend() {
+    this(null);
+  }
+
+  /**
+   * Create new analyzer instance using the given analysis budget. If the budget is {@code null},
+   * the budget is given by the command-line options.
+   */
+  public ExtendJAnalyzerFrontend(AnalysisBudget budget) {
+    this(budget, null);
+  }
+
+  /** Create a worker analyzer that only analyzes the analysis units in the partition. */
+  private ExtendJAnalyzerFrontend(AnalysisBudget budget, AnalysisPartition workerPartition) {
     super("ExtendJ Analyzer", "v1.0");
+    this.budget = budget;
+    this.workerPartition = workerPartition;
     javaParser = new JavaParser() {
       @Override
       public CompilationUnit parse(InputStream is, String fileName)
           throws IOException, beaver.Parser.Exception {
-        return new com.google.simplecfg.parser.JavaParser().parse(is, fileName);
+        return SourceParser.forCurrentThread().parse(is, fileName);
       }
     };
     bytecodeReader = new BytecodeReader() {
@@ -58,8 +131,18 @@ public class ExtendJAnalyzerFrontend extends Frontend {
     };
   }
 
+  private static CfgTracer flightRecorderTracer() {
+    try {
+      return new FlightRecorderTracer();
+    } catch (LinkageError e) {
+      return CfgTracer.NONE;
+    }
+  }
+
   /**
-   * Returns the list of findings from the analyzed source files.
+   * Returns the list of findings from the analyzed source files. The findings of each file are
+   * sorted by location, and the files are in the order they were given. The order does not
+   * depend on the number of body declaration workers.
    *
    * <p>Used by ExtendJAnalyzerMain to print the generated findings on stdout.
    */
@@ -67,18 +150,87 @@ public class ExtendJAnalyzerFrontend extends Frontend {
     return findings;
   }
 
+  /**
+   * Use the given cancellation token for the analysis. When the token is cancelled, the
+   * analysis of the current compilation unit is aborted with an {@code AnalysisCancelled}
+   * exception.
+   */
+  public void setCancellationToken(CancellationToken token) {
+    cancellationToken = token;
+  }
+
+  /**
+   * Write the findings of each compilation unit to the writer as soon as the compilation unit
+   * has been analyzed. When the files are analyzed by several workers, the findings are written
+   * after all workers are done.
+   */
+  public void setFindingsWriter(FindingsWriter writer) {
+    findingsWriter = writer;
+  }
+
+  /**
+   * Enable interprocedural method summaries, using the given cache. The cache can be shared by
+   * analyzers that run at the same time.
+   */
+  public void setMethodSummaryCache(MethodSummaryCache cache) {
+    summaryCache = cache;
+  }
+
+  /** Returns the analysis budget used by this analyzer. */
+  public AnalysisBudget getAnalysisBudget() {
+    return program.getAnalysisBudget();
+  }
+
   /**
    * Analyze a single file for findings and return the findings in a collection.
    */
   public static Collection<ExtendJFinding> analyzeFile(final String path) throws Error {
-    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    return analyzeFile(path, AnalysisBudget.unlimited());
+  }
+
+  /**
+   * Analyze a single file for findings within the given analysis budget, and return the findings
+   * in a collection.
+   */
+  public static Collection<ExtendJFinding> analyzeFile(final String path, AnalysisBudget budget)
+      throws Error {
+    return analyzeFile(path, budget, CancellationToken.NONE);
+  }
+
+  /**
+   * Analyze a single file for findings within the given analysis budget, and return the findings
+   * in a collection. Throws {@code AnalysisCancelled} if the token is cancelled before the
+   * analysis completes.
+   */
+  public static Collection<ExtendJFinding> analyzeFile(final String path, AnalysisBudget budget,
+      CancellationToken token) throws Error {
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend(budget);
+    checker.setCancellationToken(token);
     int result = checker.run(new String[] {path});
     if (result != EXIT_SUCCESS) {
-      throw new Error("exit code: " + result);
+      throw new Error(checker.errorMessage(result));
     }
     return checker.findings;
   }
 
+  /**
+   * Returns the error messages of the files that could not be analyzed, by path. A file that
+   * could not be read or parsed, or whose analysis failed twice, is reported here while the
+   * other files are analyzed as usual.
+   */
+  public Map<String, String> getFileErrors() {
+    return fileErrors;
+  }
+
+  /** Describes the failed files for an analysis that returned the given exit code. */
+  private String errorMessage(int result) {
+    if (fileErrors.isEmpty()) {
+      return "exit code: " + result;
+    }
+    Map.Entry<String, String> first = fileErrors.entrySet().iterator().next();
+    return first.getKey() + ": " + first.getValue();
+  }
+
   /**
    * Run the Java checker.
    * @param args command-line arguments
@@ -88,23 +240,88 @@ public class ExtendJAnalyzerFrontend extends Frontend {
     return run(args, bytecodeReader, javaParser);
   }
 
+  @Override
+  protected void initOptions() {
+    super.initOptions();
+    Options options = program.options();
+    options.addKeyValueOption("-max-cfg-nodes");
+    options.addKeyValueOption("-max-search-edges");
+    options.addKeyValueOption("-max-file-millis");
+    options.addKeyOption("-release-units");
+    options.addKeyValueOption("-body-decl-workers");
+    options.addKeyOption("-method-summaries");
+    options.addKeyValueOption("-summary-workers");
+  }
+
+  /** Build the analysis budget from the command-line options. */
+  private AnalysisBudget budgetFromOptions() throws NumberFormatException {
+    Options options = program.options();
+    int maxCfgNodes = 0;
+    int maxSearchEdges = 0;
+    long maxFileMillis = 0;
+    if (options.hasValueForOption("-max-cfg-nodes")) {
+      maxCfgNodes = Integer.parseInt(options.getValueForOption("-max-cfg-nodes"));
+    }
+    if (options.hasValueForOption("-max-search-edges")) {
+      maxSearchEdges = Integer.parseInt(options.getValueForOption("-max-search-edges"));
+    }
+    if (options.hasValueForOption("-max-file-millis")) {
+      maxFileMillis = Long.parseLong(options.getValueForOption("-max-file-millis"));
+    }
+    return new AnalysisBudget(maxCfgNodes, maxSearchEdges, maxFileMillis);
+  }
+
+  /** Build the analysis partition from the command-line options. */
+  private AnalysisPartition partitionFromOptions() throws NumberFormatException {
+    Options options = program.options();
+    int workers = 1;
+    if (options.hasValueForOption("-body-decl-workers")) {
+      workers = Integer.parseInt(options.getValueForOption("-body-decl-workers"));
+      if (workers < 1) {
+        throw new NumberFormatException("-body-decl-workers must be positive");
+      }
+    }
+    return new AnalysisPartition(0, workers);
+  }
+
   @Override
   protected int processCompilationUnit(CompilationUnit unit) {
     if (unit.fromSource()) {
-      findings.addAll(unit.findings());
+      cancellationToken.checkCancelled();
+      if (!unit.parseErrors().isEmpty()) {
+        // The AST of a file with syntax errors is incomplete, so the file is not analyzed.
+        if (program.getAnalysisPartition().index == 0) {
+          for (Problem problem : unit.parseErrors()) {
+            System.err.println(problem);
+          }
+        }
+        fileErrors.put(unit.pathName(), "syntax errors");
+        return EXIT_ERROR;
+      }
+      program.startFileBudget();
+      try {
+        List<ExtendJFinding> unitFindings = new ArrayList<ExtendJFinding>(unit.findings());
+        Collections.sort(unitFindings, BY_LOCATION);
+        if (findingsWriter != null && program.getAnalysisPartition().count == 1) {
+          findingsWriter.write(unitFindings);
+        }
+        // Added last, so that a failed unit that is retried does not report findings twice.
+        findings.addAll(unitFindings);
+      } catch (IOException e) {
+        throw new Error(e);
+      } finally {
+        if (program.endFileBudget()) {
+          System.err.println("Warning: analysis time budget exceeded for " + unit.pathName()
+              + ", findings may be incomplete.");
+        }
+      }
     }
     return EXIT_SUCCESS;
   }
 
   @Override
   public int run(String[] args, BytecodeReader reader, JavaParser parser) {
-    program.resetStatistics();
-    program.setTypeLookupFilter(Program.ANALYZER_TYPE_FILTER);
-    program.initBytecodeReader(bytecodeReader);
-    program.initJavaParser(javaParser);
-
-    initOptions();
-    int argResult = processArgs(args);
+    int argResult = initProgram(args);
     if (argResult != 0) {
       return argResult;
     }
@@ -120,42 +337,434 @@ public class ExtendJAnalyzerFrontend extends Frontend {
       return EXIT_SUCCESS;
     }
 
-    return run(files);
+    if (workerPartition == null && program.getAnalysisPartition().count > 1) {
+      return runPartitioned(args, files, program.getAnalysisPartition().count);
+    }
+    return run(args, files);
+  }
+
+  private int run(String[] args, Collection<String> files) {
+    if (program.options().hasOption("-release-units")) {
+      return runReleasingUnits(args, files);
+    }
+    return analyzeFiles(args, files);
   }
 
-  private int run(Collection<String> files) {
+  /** Configure the current program and process the command-line arguments. */
+  private int initProgram(String[] args) {
+    program.resetStatistics();
+    program.setTypeLookupFilter(Program.ANALYZER_TYPE_FILTER);
+    program.initBytecodeReader(bytecodeReader);
+    program.initJavaParser(javaParser);
+
+    initOptions();
+    int argResult = processArgs(args);
+    if (argResult != 0) {
+      return argResult;
+    }
+
+    if (budget == null) {
+      try {
+        budget = budgetFromOptions();
+      } catch (NumberFormatException e) {
+        System.err.println("Error: invalid analysis budget option: " + e.getMessage());
+        return EXIT_CONFIG_ERROR;
+      }
+    }
+    program.setAnalysisBudget(budget);
+    program.setCancellationToken(cancellationToken);
+    program.setCfgTracer(CFG_TRACER);
+    if (summaryCache == null && program.options().hasOption("-method-summaries")) {
+      summaryCache = new MethodSummaryCache();
+    }
+    program.setMethodSummaryCache(summaryCache);
+    if (program.options().hasValueForOption("-summary-workers")) {
+      try {
+        summaryWorkers = Integer.parseInt(program.options().getValueForOption("-summary-workers"));
+        if (summaryWorkers < 1) {
+          throw new NumberFormatException("-summary-workers must be positive");
+        }
+      } catch (NumberFormatException e) {
+        System.err.println("Error: invalid summary workers option: " + e.getMessage());
+        return EXIT_CONFIG_ERROR;
+      }
+    }
+
+    if (workerPartition != null) {
+      program.setAnalysisPartition(workerPartition);
+    } else {
+      try {
+        program.setAnalysisPartition(partitionFromOptions());
+      } catch (NumberFormatException e) {
+        System.err.println("Error: invalid body declaration workers option: " + e.getMessage());
+        return EXIT_CONFIG_ERROR;
+      }
+    }
+    return EXIT_SUCCESS;
+  }
+
+  /**
+   * Analyze the files on several threads. The analyzer attributes are not thread safe, so each
+   * worker thread builds its own program. If there are at least as many files as workers, the
+   * files are divided between the workers, and each worker parses and analyzes only its own
+   * files. Otherwise the body declarations and lambda bodies of each file are divided between
+   * the workers, and each worker parses all files but analyzes only the analysis units in its
+   * own partition. The first worker runs on the calling thread.
+   *
+   * <p>When the files are divided, a worker does not see the types declared in the files of the
+   * other workers, like with {@code -release-units}. Dividing the analysis units instead
+   * repeats the parsing and type analysis in every worker, which only pays off for a few files
+   * where the analyses dominate.
+   *
+   * <p>The findings from all workers are sorted in the same order as in a single program: by
+   * file in the order the files were given, then by location. So the findings do not depend on
+   * the number of workers or the order in which the workers finish.
+   */
+  private int runPartitioned(String[] args, Collection<String> files, int count) {
+    List<ExtendJAnalyzerFrontend> workers = new ArrayList<ExtendJAnalyzerFrontend>();
+    List<String[]> workerArgs = new ArrayList<String[]>();
+    if (files.size() >= count) {
+      for (List<String> group : groupFiles(files, count)) {
+        workers.add(new ExtendJAnalyzerFrontend(budget, AnalysisPartition.ALL));
+        workerArgs.add(argsWithFiles(args, files, group));
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        workers.add(new ExtendJAnalyzerFrontend(budget, new AnalysisPartition(i, count)));
+        workerArgs.add(args);
+      }
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(count - 1);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < workers.size(); ++i) {
+        final ExtendJAnalyzerFrontend worker = workers.get(i);
+        final String[] arguments = workerArgs.get(i);
+        worker.setCancellationToken(cancellationToken);
+        worker.setMethodSummaryCache(summaryCache);
+        if (i > 0) {
+          results.add(executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+              return worker.run(arguments);
+            }
+          }));
+        }
+      }
+      int compileResult = workers.get(0).run(workerArgs.get(0));
+      for (int i = 0; i < workers.size(); ++i) {
+        int result = i == 0 ? compileResult : results.get(i - 1).get();
+        if (result != EXIT_SUCCESS && compileResult == EXIT_SUCCESS) {
+          compileResult = result;
+        }
+        findings.addAll(workers.get(i).findings);
+        fileErrors.putAll(workers.get(i).fileErrors);
+      }
+      Collections.sort(findings, inFileOrder(files));
+      if (findingsWriter != null) {
+        findingsWriter.write(findings);
+      }
+      return compileResult;
+    } catch (IOException e) {
+      throw new Error(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new Error(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new Error(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Divides the files into the given number of groups with about the same total size. The files
+   * are assigned largest first to the group with the smallest total size so far. The files of a
+   * group are in the order they were given.
+   */
+  private static List<List<String>> groupFiles(Collection<String> files, int count) {
+    final List<String> paths = new ArrayList<String>(files);
+    final long[] sizes = new long[paths.size()];
+    List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < paths.size(); ++i) {
+      sizes[i] = new File(paths.get(i)).length();
+      order.add(i);
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        if (sizes[a] != sizes[b]) {
+          return sizes[a] > sizes[b] ? -1 : 1;
+        }
+        return a.compareTo(b);
+      }
+    });
+    long[] load = new long[count];
+    int[] group = new int[paths.size()];
+    for (int i : order) {
+      int lightest = 0;
+      for (int g = 1; g < count; ++g) {
+        if (load[g] < load[lightest]) {
+          lightest = g;
+        }
+      }
+      load[lightest] += sizes[i];
+      group[i] = lightest;
+    }
+    List<List<String>> groups = new ArrayList<List<String>>();
+    for (int g = 0; g < count; ++g) {
+      groups.add(new ArrayList<String>());
+    }
+    for (int i = 0; i < paths.size(); ++i) {
+      groups.get(group[i]).add(paths.get(i));
+    }
+    return groups;
+  }
+
+  /** The options in the arguments, followed by the given files. */
+  private static String[] argsWithFiles(String[] args, Collection<String> files,
+      Collection<String> group) {
+    List<String> result = new ArrayList<String>();
+    for (String arg : args) {
+      if (!files.contains(arg)) {
+        result.add(arg);
+      }
+    }
+    result.addAll(group);
+    return result.toArray(new String[0]);
+  }
+
+  /** Orders findings by file, location, and message. */
+  private static final Comparator<ExtendJFinding> BY_LOCATION = new Comparator<ExtendJFinding>() {
+    @Override
+    public int compare(ExtendJFinding a, ExtendJFinding b) {
+      int result = a.sourcePath.compareTo(b.sourcePath);
+      if (result == 0) {
+        result = Integer.compare(a.startLine, b.startLine);
+      }
+      if (result == 0) {
+        result = Integer.compare(a.startColumn, b.startColumn);
+      }
+      if (result == 0) {
+        result = a.subcategory.compareTo(b.subcategory);
+      }
+      if (result == 0) {
+        result = a.message.compareTo(b.message);
+      }
+      return result;
+    }
+  };
+
+  /** Orders findings by the position of their file in the given files, then by location. */
+  private static Comparator<ExtendJFinding> inFileOrder(Collection<String> files) {
+    final Map<String, Integer> order = new HashMap<String, Integer>();
+    for (String file : files) {
+      if (!order.containsKey(file)) {
+        order.put(file, order.size());
+      }
+    }
+    return new Comparator<ExtendJFinding>() {
+      @Override
+      public int compare(ExtendJFinding a, ExtendJFinding b) {
+        Integer aOrder = order.get(a.sourcePath);
+        Integer bOrder = order.get(b.sourcePath);
+        int result = Integer.compare(aOrder == null ? Integer.MAX_VALUE : aOrder,
+            bOrder == null ? Integer.MAX_VALUE : bOrder);
+        return result != 0 ? result : BY_LOCATION.compare(a, b);
+      }
+    };
+  }
+
+  /**
+   * Analyze each file in a separate program. The program for the previous file, including the
+   * AST, CFGs and all attribute caches, becomes garbage before the next file is parsed, so peak
+   * memory use is bounded by the largest file instead of the sum of all files.
+   *
+   * <p>Each file is analyzed in isolation, so types declared in the other files are not
+   * visible. This matches how the Shipshape analyzer processes files.
+   */
+  private int runReleasingUnits(String[] args, Collection<String> files) {
+    int compileResult = EXIT_SUCCESS;
+    boolean first = true;
+    for (String file : files) {
+      if (!first) {
+        program = new Program();
+        int argResult = initProgram(args);
+        if (argResult != 0) {
+          return argResult;
+        }
+      }
+      first = false;
+      int result = analyzeFiles(args, Collections.singletonList(file));
+      if (result != EXIT_SUCCESS) {
+        compileResult = result;
+      }
+    }
+    return compileResult;
+  }
+
+  /**
+   * Parse and analyze the files in the current program. A file that can not be read or parsed
+   * is reported and skipped. If the analysis of a file fails, the file is analyzed again in a new
+   * program by {@link #retryIsolated}, and the remaining files are analyzed as usual.
+   */
+  private int analyzeFiles(String[] args, Collection<String> files) {
+    int compileResult = EXIT_SUCCESS;
     try {
       for (String file : files) {
-        // Calling addSourceFile will parse the file and add it to the program AST.
-        program.addSourceFile(file);
+        cancellationToken.checkCancelled();
+        try {
+          // Calling addSourceFile will parse the file and add it to the program AST.
+          program.addSourceFile(file);
+        } catch (IOException e) {
+          System.err.println("Error: failed to read " + file + ": " + e.getMessage());
+          fileErrors.put(file, e.toString());
+          compileResult = EXIT_SYSTEM_ERROR;
+        }
       }
 
-      // Process source compilation units.
-      int compileResult = EXIT_SUCCESS;
+      computeMethodSummaries(args, files);
 
+      // Process source compilation units.
       Iterator<CompilationUnit> iter = program.compilationUnitIterator();
       while (iter.hasNext()) {
         CompilationUnit unit = iter.next();
-        int result = processCompilationUnit(unit);
+        int result;
+        try {
+          result = processCompilationUnit(unit);
+        } catch (AnalysisCancelled e) {
+          throw e;
+        } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+          result = isRetry ? failed(unit.pathName(), e) : retryIsolated(args, unit.pathName(), e);
+        }
         if (result != EXIT_SUCCESS) {
           compileResult = result;
-          if (compileResult == EXIT_UNHANDLED_ERROR) {
-            // Stop immediately when an unhandled error is encountered.
-            return compileResult;
-          }
         }
       }
-
-      if (compileResult != EXIT_SUCCESS) {
-        return compileResult;
-      }
-    } catch (IOException e) {
-      throw new Error(e);
     } finally {
       if (program.options().hasOption("-profile")) {
         program.printStatistics(System.out);
+        System.out.println("Analysis budget: " + program.getAnalysisBudget());
       }
     }
-    return EXIT_SUCCESS;
+    return compileResult;
+  }
+
+  /**
+   * Compute the method summaries of the current program before its files are analyzed, so that
+   * the time is not charged to the time budget of the file that first needs a summary. With more
+   * than one summary worker, each other worker parses the files into its own program, and
+   * independent parts of the call graph are summarized in parallel. If the summaries can not be
+   * computed, the files are analyzed without them.
+   */
+  private void computeMethodSummaries(final String[] args, final Collection<String> files) {
+    if (summaryCache == null) {
+      return;
+    }
+    final AnalysisPartition partition = program.getAnalysisPartition();
+    List<Callable<Program>> helpers = new ArrayList<Callable<Program>>();
+    for (int i = 1; i < summaryWorkers; ++i) {
+      helpers.add(new Callable<Program>() {
+        @Override
+        public Program call() throws IOException {
+          ExtendJAnalyzerFrontend helper = new ExtendJAnalyzerFrontend(budget, partition);
+          helper.setCancellationToken(cancellationToken);
+          if (helper.initProgram(args) != EXIT_SUCCESS) {
+            return null;
+          }
+          for (String file : files) {
+            helper.program.addSourceFile(file);
+          }
+          return helper.program;
+        }
+      });
+    }
+    Throwable failure;
+    try {
+      program.computeMethodSummaries(helpers);
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisCancelled();
+    } catch (ExecutionException e) {
+      failure = e.getCause();
+    } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+      failure = e;
+    }
+    if (failure instanceof AnalysisCancelled) {
+      throw (AnalysisCancelled) failure;
+    }
+    System.err.println("Warning: computing method summaries failed with " + failure
+        + ", analyzing without summaries.");
+    program.setMethodSummaryCache(null);
+  }
+
+  /**
+   * Analyze a file whose analysis failed in the current program again, alone in a new program
+   * and on a thread with a large stack. Attributes of the current program may be left partially
+   * evaluated by the failure, so the file is not analyzed in it again.
+   *
+   * @return the exit code of the retry
+   */
+  private int retryIsolated(String[] args, String file, Throwable failure) {
+    System.err.println("Warning: analysis of " + file + " failed with " + failure
+        + ", retrying in a new program.");
+    List<String> retryArgs = new ArrayList<String>();
+    Collection<String> files = program.options().files();
+    for (String arg : args) {
+      if (!files.contains(arg)) {
+        retryArgs.add(arg);
+      }
+    }
+    retryArgs.add(file);
+    final String[] retryArgArray = retryArgs.toArray(new String[0]);
+    final ExtendJAnalyzerFrontend retry =
+        new ExtendJAnalyzerFrontend(budget, program.getAnalysisPartition());
+    retry.isRetry = true;
+    retry.setCancellationToken(cancellationToken);
+    retry.setMethodSummaryCache(summaryCache);
+    retry.findingsWriter = findingsWriter;
+    final int[] result = { EXIT_UNHANDLED_ERROR };
+    final Throwable[] retryFailure = { null };
+    Thread thread = new Thread(null, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          result[0] = retry.run(retryArgArray);
+        } catch (Throwable e) {
+          retryFailure[0] = e;
+        }
+      }
+    }, "extendj-retry", RETRY_STACK_BYTES);
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new Error(e);
+    }
+    if (retryFailure[0] instanceof AnalysisCancelled) {
+      throw (AnalysisCancelled) retryFailure[0];
+    }
+    if (retryFailure[0] != null) {
+      return failed(file, retryFailure[0]);
+    }
+    findings.addAll(retry.findings);
+    fileErrors.putAll(retry.fileErrors);
+    return result[0];
+  }
+
+  /** Report a file whose analysis failed. */
+  private int failed(String file, Throwable failure) {
+    System.err.println("Error: analysis of " + file + " failed");
+    failure.printStackTrace();
+    fileErrors.put(file, failure.toString());
+    return EXIT_UNHANDLED_ERROR;
   }
 }
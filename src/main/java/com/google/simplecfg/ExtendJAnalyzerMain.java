@@ -17,8 +17,25 @@ package com.google.simplecfg;
 
 import com.google.simplecfg.ast.ExtendJFinding;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Produces findings using analyzers implemented in the ExtendJ compiler.
+ *
+ * <p>By default the findings are printed as text after all files are analyzed. With
+ * {@code -findings-format=jsonl} or {@code -findings-format=sarif}, the findings are instead
+ * streamed in that format as each file is analyzed, to stdout or to the file given by
+ * {@code -findings-out=FILE}.
+ *
+ * <p>If a local analyzer daemon is running, the analysis is done by the daemon, see
+ * {@link LocalAnalyzerClient}.
  */
 public class ExtendJAnalyzerMain {
 
@@ -27,14 +44,70 @@ public class ExtendJAnalyzerMain {
    * @param args command-line arguments
    */
   public static void main(String[] args) {
-    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
-    int result = checker.run(args);
+    Integer result = LocalAnalyzerClient.tryRun(LocalAnalyzerClient.ANALYZE, args);
+    if (result == null) {
+      result = run(args, System.out, System.err);
+    }
     if (result != 0) {
       System.exit(result);
     }
-    System.out.println("Found " + checker.getFindings().size() + " findings.");
-    for (ExtendJFinding finding : checker.getFindings()) {
-      System.out.println(finding);
+  }
+
+  /**
+   * Run the ExtendJ analyzer and write the findings to the output stream, or to the file given by
+   * {@code -findings-out=FILE}. Returns the exit code.
+   */
+  static int run(String[] args, OutputStream out, PrintStream err) {
+    FindingsWriter.Format format = FindingsWriter.Format.TEXT;
+    String outputPath = null;
+    List<String> analyzerArgs = new ArrayList<String>();
+    try {
+      for (String arg : args) {
+        if (arg.startsWith("-findings-format=")) {
+          format = FindingsWriter.Format.forName(arg.substring("-findings-format=".length()));
+        } else if (arg.startsWith("-findings-out=")) {
+          outputPath = arg.substring("-findings-out=".length());
+        } else {
+          analyzerArgs.add(arg);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      err.println("Error: " + e.getMessage());
+      return ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR;
+    }
+
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    if (format == FindingsWriter.Format.TEXT && outputPath == null) {
+      int result = checker.run(analyzerArgs.toArray(new String[0]));
+      if (result == ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR) {
+        return result;
+      }
+      // Files that failed are reported on stderr, print the findings of the other files.
+      PrintStream printer = new PrintStream(out);
+      printer.println("Found " + checker.getFindings().size() + " findings.");
+      for (ExtendJFinding finding : checker.getFindings()) {
+        printer.println(finding);
+      }
+      printer.flush();
+      return result;
+    }
+
+    int result;
+    try (FindingsWriter writer = FindingsWriter.create(format, outputChannel(outputPath, out))) {
+      checker.setFindingsWriter(writer);
+      result = checker.run(analyzerArgs.toArray(new String[0]));
+    } catch (IOException e) {
+      err.println("Error: failed to write findings: " + e.getMessage());
+      result = ExtendJAnalyzerFrontend.EXIT_UNHANDLED_ERROR;
+    }
+    return result;
+  }
+
+  private static WritableByteChannel outputChannel(String path, OutputStream out)
+      throws IOException {
+    if (path == null) {
+      return Channels.newChannel(out);
     }
+    return new FileOutputStream(path).getChannel();
   }
 }
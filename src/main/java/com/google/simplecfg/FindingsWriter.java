@@ -0,0 +1,308 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.ExtendJFinding.ExtendJFix;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes findings in a machine-readable format as they are produced.
+ *
+ * <p>The analyzer calls {@link #write} once per compilation unit, and the findings are flushed
+ * to the output channel after each call so that consumers can process them incrementally. The
+ * writer must be closed after the last compilation unit to complete the output.
+ */
+public abstract class FindingsWriter implements AutoCloseable {
+
+  /** The supported output formats. */
+  public enum Format {
+    /** One line per finding, in the same format as the command-line output. */
+    TEXT("text", true),
+    /** One JSON object per finding and line. */
+    JSONL("jsonl", true),
+    /** A SARIF 2.1.0 log with a single run. */
+    SARIF("sarif", false);
+
+    public final String name;
+    private final boolean fileUpdates;
+
+    Format(String name, boolean fileUpdates) {
+      this.name = name;
+      this.fileUpdates = fileUpdates;
+    }
+
+    /**
+     * Returns {@code true} if the format can mark the findings of each file, so that writers for
+     * it support {@link FindingsWriter#writeFile}.
+     */
+    public boolean supportsFileUpdates() {
+      return fileUpdates;
+    }
+
+    /** Find the format with the given name. Throws IllegalArgumentException for unknown names. */
+    public static Format forName(String name) {
+      for (Format format : values()) {
+        if (format.name.equals(name)) {
+          return format;
+        }
+      }
+      throw new IllegalArgumentException("unknown findings format: " + name);
+    }
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  protected final Writer out;
+
+  private final Format format;
+
+  protected FindingsWriter(Format format, WritableByteChannel channel) {
+    this.format = format;
+    out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+        BUFFER_SIZE);
+  }
+
+  /** Create a findings writer for the format that writes to the channel. */
+  public static FindingsWriter create(Format format, WritableByteChannel channel) {
+    switch (format) {
+      case TEXT:
+        return new TextWriter(channel);
+      case JSONL:
+        return new JsonWriter(channel);
+      case SARIF:
+        return new SarifWriter(channel);
+    }
+    throw new IllegalArgumentException("unknown findings format: " + format);
+  }
+
+  /** Write the findings for one compilation unit and flush the output. */
+  public void write(Collection<ExtendJFinding> findings) throws IOException {
+    for (ExtendJFinding finding : findings) {
+      writeFinding(finding);
+    }
+    out.flush();
+  }
+
+  /** Returns {@code true} if the writer supports {@link #writeFile}. */
+  public boolean supportsFileUpdates() {
+    return format.supportsFileUpdates();
+  }
+
+  /**
+   * Write the complete findings for one source file and flush the output. The findings are
+   * preceded by a record that gives the file and the number of findings, so that a consumer that
+   * receives repeated updates for the same file can replace the previous findings for it.
+   *
+   * @throws UnsupportedOperationException if the format does not support file updates
+   */
+  public void writeFile(String path, Collection<ExtendJFinding> findings) throws IOException {
+    if (!supportsFileUpdates()) {
+      throw new UnsupportedOperationException(
+          "file updates are not supported by the " + format.name + " format");
+    }
+    writeFileHeader(path, findings.size());
+    write(findings);
+  }
+
+  /**
+   * Write the record that precedes the findings in {@link #writeFile}. Writers for formats that
+   * support file updates must override this.
+   */
+  protected void writeFileHeader(String path, int count) throws IOException {
+  }
+
+  protected abstract void writeFinding(ExtendJFinding finding) throws IOException;
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  /** Writes {@code ExtendJFinding.toString()} lines. */
+  static class TextWriter extends FindingsWriter {
+    TextWriter(WritableByteChannel channel) {
+      super(Format.TEXT, channel);
+    }
+
+    @Override
+    protected void writeFinding(ExtendJFinding finding) throws IOException {
+      out.write(finding.toString());
+      out.write('\n');
+    }
+
+    @Override
+    protected void writeFileHeader(String path, int count) throws IOException {
+      out.write(String.format("Analyzed %s: %d findings.\n", path, count));
+    }
+  }
+
+  /**
+   * Writes one JSON object per finding, with the file, location, subcategory, message, and
+   * suggested fixes.
+   */
+  static class JsonWriter extends FindingsWriter {
+    /** The quoted form of the last written path; findings for a file are written together. */
+    private String lastPath = null;
+    private String lastQuotedPath = null;
+
+    JsonWriter(WritableByteChannel channel) {
+      super(Format.JSONL, channel);
+    }
+
+    @Override
+    protected void writeFinding(ExtendJFinding finding) throws IOException {
+      if (!finding.sourcePath.equals(lastPath)) {
+        lastPath = finding.sourcePath;
+        lastQuotedPath = JsonStrings.quote(lastPath);
+      }
+      out.write("{\"file\":");
+      out.write(lastQuotedPath);
+      out.write(String.format(",\"line\":%d,\"column\":%d,\"endLine\":%d,\"endColumn\":%d",
+          finding.startLine, finding.startColumn, finding.endLine, finding.endColumn));
+      out.write(",\"category\":");
+      out.write(JsonStrings.quote(finding.subcategory));
+      out.write(",\"message\":");
+      out.write(JsonStrings.quote(finding.message));
+      if (!finding.fixes.isEmpty()) {
+        out.write(",\"fixes\":[");
+        boolean first = true;
+        for (ExtendJFix fix : finding.fixes) {
+          if (!first) {
+            out.write(',');
+          }
+          first = false;
+          out.write("{\"description\":");
+          out.write(JsonStrings.quote(fix.description));
+          out.write(String.format(",\"startLine\":%d,\"endLine\":%d,\"newText\":",
+              fix.startLine, fix.endLine));
+          out.write(JsonStrings.quote(fix.newText));
+          out.write('}');
+        }
+        out.write(']');
+      }
+      out.write("}\n");
+    }
+
+    @Override
+    protected void writeFileHeader(String path, int count) throws IOException {
+      out.write("{\"file\":");
+      out.write(JsonStrings.quote(path));
+      out.write(String.format(",\"findings\":%d}\n", count));
+    }
+  }
+
+  /**
+   * Writes a SARIF log. The results are written as they are produced; each source file is listed
+   * once in the artifacts of the run, which are written when the writer is closed, and results
+   * refer to their file by artifact index. Absolute source paths are written as {@code file:}
+   * URIs, and relative source paths as relative references to the {@code %SRCROOT%} base.
+   */
+  static class SarifWriter extends FindingsWriter {
+    private final Map<String, Integer> artifacts = new HashMap<String, Integer>();
+    private final List<String> artifactUris = new ArrayList<String>();
+    private boolean firstResult = true;
+
+    SarifWriter(WritableByteChannel channel) {
+      super(Format.SARIF, channel);
+      try {
+        out.write("{\"version\":\"2.1.0\",\"$schema\":"
+            + "\"https://json.schemastore.org/sarif-2.1.0.json\",\"runs\":[{"
+            + "\"tool\":{\"driver\":{\"name\":\"ExtendJ Analyzer\",\"version\":\"1.0\"}},"
+            + "\"results\":[");
+      } catch (IOException e) {
+        // The output is buffered, so nothing is written to the channel yet.
+        throw new Error(e);
+      }
+    }
+
+    @Override
+    protected void writeFinding(ExtendJFinding finding) throws IOException {
+      Integer index = artifacts.get(finding.sourcePath);
+      if (index == null) {
+        index = artifactUris.size();
+        artifacts.put(finding.sourcePath, index);
+        artifactUris.add(finding.sourcePath);
+      }
+      if (!firstResult) {
+        out.write(',');
+      }
+      firstResult = false;
+      out.write("\n{\"ruleId\":");
+      out.write(JsonStrings.quote(finding.subcategory));
+      out.write(",\"level\":\"warning\",\"message\":{\"text\":");
+      out.write(JsonStrings.quote(finding.message));
+      out.write("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"index\":");
+      out.write(Integer.toString(index));
+      out.write(String.format("},\"region\":{\"startLine\":%d,\"startColumn\":%d,"
+          + "\"endLine\":%d,\"endColumn\":%d}}}]}",
+          finding.startLine, finding.startColumn, finding.endLine, finding.endColumn));
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.write("\n],\"artifacts\":[");
+      for (int i = 0; i < artifactUris.size(); ++i) {
+        if (i > 0) {
+          out.write(',');
+        }
+        String path = artifactUris.get(i);
+        out.write("\n{\"location\":{\"uri\":");
+        if (Paths.get(path).isAbsolute()) {
+          out.write(JsonStrings.quote(Paths.get(path).toUri().toASCIIString()));
+        } else {
+          out.write(JsonStrings.quote(relativeUri(path)));
+          out.write(",\"uriBaseId\":\"%SRCROOT%\"");
+        }
+        out.write("}}");
+      }
+      out.write("]}]}\n");
+      super.close();
+    }
+
+    /**
+     * The relative URI reference for a relative path. Each path segment is percent-encoded,
+     * except for the unreserved URI characters.
+     */
+    static String relativeUri(String path) {
+      StringBuilder uri = new StringBuilder();
+      byte[] bytes = path.replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8);
+      for (byte b : bytes) {
+        char c = (char) (b & 0xFF);
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '-' || c == '.' || c == '_' || c == '~' || c == '/') {
+          uri.append(c);
+        } else {
+          uri.append(String.format("%%%02X", (int) c));
+        }
+      }
+      return uri.toString();
+    }
+  }
+}
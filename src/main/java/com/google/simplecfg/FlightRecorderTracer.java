@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import com.google.simplecfg.ast.CfgNode;
+import com.google.simplecfg.ast.CfgSpan;
+import com.google.simplecfg.ast.CfgSpanKind;
+import com.google.simplecfg.ast.CfgTracer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits the traced CFG operations as JDK Flight Recorder events, so that a recording shows which
+ * methods in which files are slow to analyze.
+ *
+ * <p>The events are disabled by default, and have a default threshold of one millisecond when
+ * enabled. They are enabled in a recording configuration by name, for example
+ * {@code com.google.simplecfg.CfgSearch#enabled=true}. When no recording enables an event type,
+ * the operation is not timed and its edges are not counted.
+ *
+ * <p>Requires a JVM with the {@code jdk.jfr} API: JDK 11 or later, or JDK 8u262 or later. On other
+ * JVMs, loading this class throws a {@code LinkageError}.
+ */
+public class FlightRecorderTracer implements CfgTracer {
+
+  @Category("SimpleCFG")
+  @Enabled(false)
+  @Threshold("1 ms")
+  @StackTrace(false)
+  abstract static class CfgEvent extends Event implements CfgSpan {
+    @Label("File")
+    String file;
+
+    @Label("Method")
+    String method;
+
+    @Label("Detail")
+    @Description("The traversal, search or analysis")
+    String detail;
+
+    @Label("Nodes")
+    @Description("The number of nodes expanded")
+    int nodes;
+
+    @Label("Edges")
+    @Description("The number of edges visited")
+    int edges;
+
+    @Override
+    public void end(CfgNode node, int nodes, int edges) {
+      end();
+      if (shouldCommit()) {
+        this.file = node.traceFile();
+        this.method = node.traceMethod();
+        this.nodes = nodes;
+        this.edges = edges;
+        commit();
+      }
+    }
+  }
+
+  @Name("com.google.simplecfg.CfgBuild")
+  @Label("CFG Build")
+  @Description("A full traversal of the CFG successors, which builds the CFG on first use")
+  static class CfgBuildEvent extends CfgEvent {
+  }
+
+  @Name("com.google.simplecfg.CfgPredecessors")
+  @Label("CFG Predecessors")
+  @Description("Initialization of the CFG predecessors")
+  static class CfgPredecessorsEvent extends CfgEvent {
+  }
+
+  @Name("com.google.simplecfg.CfgSearch")
+  @Label("CFG Search")
+  @Description("A Breadth-First search over the full or sparse CFG")
+  static class CfgSearchEvent extends CfgEvent {
+  }
+
+  @Name("com.google.simplecfg.CfgAnalysis")
+  @Label("CFG Analysis")
+  @Description("The search of an analysis for a single finding site")
+  static class CfgAnalysisEvent extends CfgEvent {
+  }
+
+  private final EventType buildType = EventType.getEventType(CfgBuildEvent.class);
+  private final EventType predecessorsType = EventType.getEventType(CfgPredecessorsEvent.class);
+  private final EventType searchType = EventType.getEventType(CfgSearchEvent.class);
+  private final EventType analysisType = EventType.getEventType(CfgAnalysisEvent.class);
+
+  @Override
+  public CfgSpan begin(CfgSpanKind kind, String detail) {
+    CfgEvent event;
+    switch (kind) {
+      case CFG_BUILD:
+        if (!buildType.isEnabled()) {
+          return null;
+        }
+        event = new CfgBuildEvent();
+        break;
+      case PREDECESSORS:
+        if (!predecessorsType.isEnabled()) {
+          return null;
+        }
+        event = new CfgPredecessorsEvent();
+        break;
+      case SEARCH:
+        if (!searchType.isEnabled()) {
+          return null;
+        }
+        event = new CfgSearchEvent();
+        break;
+      case ANALYSIS:
+        if (!analysisType.isEnabled()) {
+          return null;
+        }
+        event = new CfgAnalysisEvent();
+        break;
+      default:
+        return null;
+    }
+    event.detail = detail;
+    event.begin();
+    return event;
+  }
+}
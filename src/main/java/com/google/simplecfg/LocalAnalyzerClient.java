@@ -0,0 +1,221 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs a command-line tool in a running {@link LocalAnalyzerServer} instead of in the current
+ * JVM, so that the tool runs with loaded classes and compiled code.
+ *
+ * <p>The server is found through its descriptor file, which holds the port of the server and a
+ * secret token. If there is no descriptor file, or the server does not accept the connection,
+ * the caller runs the tool in process. Setting the {@code SIMPLECFG_NO_DAEMON} environment
+ * variable disables the client.
+ *
+ * <p>The server does not share the working directory of the client, so the client converts
+ * source file arguments, the {@code -out} and {@code -findings-out} options, and the paths given
+ * to the path options of the ExtendJ frontend, such as {@code -classpath}, to absolute paths.
+ * The values of other options are sent unchanged.
+ *
+ * <p>Protocol: the client sends the token, the tool name, the number of arguments, and the
+ * arguments, all as modified UTF-8 strings except for the argument count. The server replies with
+ * a sequence of frames. Each frame starts with a kind byte: {@link #STDOUT} and {@link #STDERR}
+ * frames are followed by a length and that many bytes of output, and the final {@link #EXIT}
+ * frame is followed by the exit code.
+ */
+public final class LocalAnalyzerClient {
+
+  /** The tool name for {@link ExtendJAnalyzerMain}. */
+  public static final String ANALYZE = "analyze";
+
+  /** The tool name for {@link PrintCfg}. */
+  public static final String PRINT_CFG = "print-cfg";
+
+  static final byte EXIT = 0;
+  static final byte STDOUT = 1;
+  static final byte STDERR = 2;
+
+  /** Options whose value is a path. */
+  private static final String[] PATH_OPTIONS = { "-out=", "-findings-out=" };
+
+  /** ExtendJ options whose value is the next argument, and is a list of paths. */
+  private static final Set<String> PATH_LIST_OPTIONS = new HashSet<String>(Arrays.asList(
+      "-classpath", "-cp", "-sourcepath", "-bootclasspath", "-extdirs"));
+
+  /** ExtendJ options whose value is the next argument, and is a path. */
+  private static final Set<String> PATH_VALUE_OPTIONS = Collections.singleton("-d");
+
+  /** ExtendJ options whose value is the next argument, and is not a path. */
+  private static final Set<String> VALUE_OPTIONS = new HashSet<String>(Arrays.asList(
+      "-encoding", "-source", "-target"));
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 200;
+
+  private LocalAnalyzerClient() {
+  }
+
+  /** The descriptor file of the server for the current user. */
+  static Path defaultDescriptor() {
+    return Paths.get(System.getProperty("user.home"), ".simplecfg", "daemon");
+  }
+
+  /**
+   * Run the tool in the local analyzer server, forwarding its output to stdout and stderr.
+   * Returns the exit code of the tool, or {@code null} if no server is running.
+   */
+  public static Integer tryRun(String tool, String[] args) {
+    if (System.getenv("SIMPLECFG_NO_DAEMON") != null) {
+      return null;
+    }
+    return tryRun(defaultDescriptor(), tool, args, System.out, System.err);
+  }
+
+  /**
+   * Run the tool in the server given by the descriptor file. Returns the exit code of the tool,
+   * or {@code null} if the server is not running.
+   */
+  static Integer tryRun(Path descriptor, String tool, String[] args, OutputStream out,
+      PrintStream err) {
+    int port;
+    String token;
+    try {
+      List<String> lines = Files.readAllLines(descriptor, StandardCharsets.UTF_8);
+      port = Integer.parseInt(lines.get(0));
+      token = lines.get(1);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | RuntimeException e) {
+      err.println("Warning: ignoring invalid analyzer daemon descriptor " + descriptor);
+      return null;
+    }
+
+    Socket socket = new Socket();
+    try {
+      try {
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+            CONNECT_TIMEOUT_MILLIS);
+      } catch (IOException e) {
+        // The descriptor is stale.
+        return null;
+      }
+      DataOutputStream request = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      request.writeUTF(token);
+      request.writeUTF(tool);
+      request.writeInt(args.length);
+      for (String arg : absoluteArguments(args)) {
+        request.writeUTF(arg);
+      }
+      request.flush();
+
+      DataInputStream response = new DataInputStream(
+          new BufferedInputStream(socket.getInputStream()));
+      byte[] buffer = new byte[0];
+      while (true) {
+        byte kind = response.readByte();
+        if (kind == EXIT) {
+          out.flush();
+          return response.readInt();
+        }
+        int length = response.readInt();
+        if (length > buffer.length) {
+          buffer = new byte[length];
+        }
+        response.readFully(buffer, 0, length);
+        if (kind == STDOUT) {
+          out.write(buffer, 0, length);
+        } else {
+          out.flush();
+          err.write(buffer, 0, length);
+        }
+      }
+    } catch (IOException e) {
+      // The output may be partially written, so the tool can not be run again in process.
+      err.println("Error: lost connection to the analyzer daemon: " + e.getMessage());
+      return ExtendJAnalyzerFrontend.EXIT_SYSTEM_ERROR;
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Nothing more to do.
+      }
+    }
+  }
+
+  /** Convert the source file arguments and the paths given to path options to absolute paths. */
+  static String[] absoluteArguments(String[] args) {
+    String[] result = new String[args.length];
+    for (int i = 0; i < args.length; ++i) {
+      String arg = args[i];
+      String option = i > 0 ? args[i - 1] : "";
+      if (PATH_LIST_OPTIONS.contains(option)) {
+        StringBuilder paths = new StringBuilder();
+        for (String path : arg.split(File.pathSeparator, -1)) {
+          if (paths.length() > 0) {
+            paths.append(File.pathSeparator);
+          }
+          paths.append(path.isEmpty() ? path : absolutePath(path));
+        }
+        result[i] = paths.toString();
+      } else if (PATH_VALUE_OPTIONS.contains(option)) {
+        result[i] = absolutePath(arg);
+      } else if (VALUE_OPTIONS.contains(option)) {
+        result[i] = arg;
+      } else if (arg.startsWith("-")) {
+        result[i] = absoluteOption(arg);
+      } else {
+        // A source file.
+        result[i] = absolutePath(arg);
+      }
+    }
+    return result;
+  }
+
+  /** Convert the value of an {@code -option=path} argument to an absolute path. */
+  private static String absoluteOption(String arg) {
+    for (String option : PATH_OPTIONS) {
+      if (arg.startsWith(option)) {
+        return option + absolutePath(arg.substring(option.length()));
+      }
+    }
+    return arg;
+  }
+
+  private static String absolutePath(String path) {
+    return Paths.get(path).toAbsolutePath().toString();
+  }
+}
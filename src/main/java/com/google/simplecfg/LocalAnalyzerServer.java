@@ -0,0 +1,288 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs {@link ExtendJAnalyzerMain} and {@link PrintCfg} for {@link LocalAnalyzerClient}s, so
+ * that short invocations do not pay for JVM startup, class loading and JIT warm-up.
+ *
+ * <p>The server listens on an ephemeral port on the loopback interface, and writes the port and a
+ * random token to a descriptor file that only the current user can read. Requests without the
+ * token are rejected before the rest of the request is read, requests with more than
+ * {@link #MAX_ARGS} arguments are rejected, and a request must be sent within
+ * {@link #REQUEST_TIMEOUT_MILLIS}. The descriptor is removed when the server shuts down.
+ *
+ * <p>The output of a tool is sent to the client, but messages that the ExtendJ frontend writes
+ * directly to stdout or stderr, such as parse errors, are written by the server.
+ *
+ * <p>Usage: {@code LocalAnalyzerServer [-threads=N] [-descriptor=FILE]}
+ */
+public class LocalAnalyzerServer {
+
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  /** The maximum number of arguments in a request. */
+  static final int MAX_ARGS = 64 * 1024;
+
+  /** The time to wait for each read of a request. */
+  static final int REQUEST_TIMEOUT_MILLIS = 10 * 1000;
+
+  /** The maximum number of bytes read from a rejected request before closing the connection. */
+  private static final int MAX_DISCARDED_BYTES = 1024 * 1024;
+
+  private final ServerSocket serverSocket;
+  private final String token;
+  private final ExecutorService executor;
+
+  LocalAnalyzerServer(int threads) throws IOException {
+    serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    byte[] secret = new byte[16];
+    new SecureRandom().nextBytes(secret);
+    StringBuilder hex = new StringBuilder();
+    for (byte b : secret) {
+      hex.append(String.format("%02x", b & 0xFF));
+    }
+    token = hex.toString();
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  public static void main(String[] args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    Path descriptor = LocalAnalyzerClient.defaultDescriptor();
+    try {
+      for (String arg : args) {
+        if (arg.startsWith("-threads=")) {
+          threads = Integer.parseInt(arg.substring("-threads=".length()));
+          if (threads < 1) {
+            throw new IllegalArgumentException("-threads must be positive");
+          }
+        } else if (arg.startsWith("-descriptor=")) {
+          descriptor = Paths.get(arg.substring("-descriptor=".length()));
+        } else {
+          throw new IllegalArgumentException("unknown option: " + arg);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR);
+    }
+
+    try {
+      final LocalAnalyzerServer server = new LocalAnalyzerServer(threads);
+      final Path descriptorFile = descriptor;
+      server.writeDescriptor(descriptorFile);
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          try {
+            Files.deleteIfExists(descriptorFile);
+          } catch (IOException e) {
+            // The JVM is exiting.
+          }
+        }
+      });
+      System.err.format("Accepting analyzer requests at %s\n",
+          server.serverSocket.getLocalSocketAddress());
+      server.serve();
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(ExtendJAnalyzerFrontend.EXIT_SYSTEM_ERROR);
+    }
+  }
+
+  /**
+   * Write the port and token to the descriptor file. The file is created with owner-only
+   * permissions before the token is written, and moved into place atomically.
+   */
+  void writeDescriptor(Path descriptor) throws IOException {
+    Path dir = descriptor.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path temp = Files.createTempFile(dir, "daemon", ".tmp");
+    try {
+      Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException e) {
+      // Not a POSIX file system, the file has the default permissions of a temporary file.
+    }
+    Files.write(temp, (serverSocket.getLocalPort() + "\n" + token + "\n")
+        .getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, descriptor, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Accept and handle requests until the server socket is closed. */
+  void serve() throws IOException {
+    try {
+      while (true) {
+        final Socket socket = serverSocket.accept();
+        executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            handle(socket);
+          }
+        });
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Stop accepting requests. */
+  void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void handle(Socket socket) {
+    try {
+      socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+      DataInputStream request = new DataInputStream(
+          new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream response = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      OutputStream out = new BufferedOutputStream(
+          new FrameOutputStream(response, LocalAnalyzerClient.STDOUT), OUTPUT_BUFFER_SIZE);
+      PrintStream err = new PrintStream(
+          new FrameOutputStream(response, LocalAnalyzerClient.STDERR), true);
+
+      // Check the token before reading the rest of the request.
+      String requestToken = request.readUTF();
+      int exitCode = ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR;
+      boolean rejected = true;
+      if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+          requestToken.getBytes(StandardCharsets.UTF_8))) {
+        err.println("Error: invalid analyzer daemon token");
+      } else {
+        String tool = request.readUTF();
+        int argCount = request.readInt();
+        if (argCount < 0 || argCount > MAX_ARGS) {
+          err.println("Error: invalid number of arguments: " + argCount);
+        } else {
+          String[] args = new String[argCount];
+          for (int i = 0; i < args.length; ++i) {
+            args[i] = request.readUTF();
+          }
+          rejected = false;
+          exitCode = run(tool, args, out, err);
+        }
+      }
+      out.flush();
+      err.flush();
+      synchronized (response) {
+        response.writeByte(LocalAnalyzerClient.EXIT);
+        response.writeInt(exitCode);
+        response.flush();
+      }
+      if (rejected) {
+        // Closing the socket with unread input resets the connection, and the client could
+        // then lose the response.
+        socket.shutdownOutput();
+        discard(request);
+      }
+    } catch (IOException e) {
+      // The client disconnected.
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Nothing more to do.
+      }
+    }
+  }
+
+  /** Read and discard the rest of a rejected request, up to {@link #MAX_DISCARDED_BYTES}. */
+  private static void discard(DataInputStream request) throws IOException {
+    byte[] buffer = new byte[4096];
+    int discarded = 0;
+    int count;
+    while (discarded < MAX_DISCARDED_BYTES && (count = request.read(buffer)) != -1) {
+      discarded += count;
+    }
+  }
+
+  /** Run the tool. Returns the exit code. */
+  static int run(String tool, String[] args, OutputStream out, PrintStream err) {
+    try {
+      switch (tool) {
+        case LocalAnalyzerClient.ANALYZE:
+          return ExtendJAnalyzerMain.run(args, out, err);
+        case LocalAnalyzerClient.PRINT_CFG:
+          return new PrintCfg().run(args, out, err);
+        default:
+          err.println("Error: unknown tool: " + tool);
+          return ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR;
+      }
+    } catch (RuntimeException | Error e) {
+      err.println("Error: " + tool + " failed");
+      e.printStackTrace(err);
+      return ExtendJAnalyzerFrontend.EXIT_UNHANDLED_ERROR;
+    }
+  }
+
+  /** Writes the output of one stream as frames to the response. */
+  private static class FrameOutputStream extends OutputStream {
+    private final DataOutputStream response;
+    private final byte kind;
+
+    FrameOutputStream(DataOutputStream response, byte kind) {
+      this.response = response;
+      this.kind = kind;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      synchronized (response) {
+        response.writeByte(kind);
+        response.writeInt(len);
+        response.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (response) {
+        response.flush();
+      }
+    }
+  }
+}
@@ -15,62 +15,245 @@
  */
 package com.google.simplecfg;
 
-import com.google.simplecfg.ast.Program;
-import com.google.simplecfg.ast.Frontend;
-import com.google.simplecfg.ast.CompilationUnit;
 import com.google.simplecfg.ast.BodyDecl;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Problem;
+import com.google.simplecfg.ast.Program;
 import com.google.simplecfg.ast.TypeDecl;
-import com.google.simplecfg.parser.JavaParser;
 
-import java.io.FileInputStream;
-import java.util.Set;
-import java.util.HashSet;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Prints a Simplified Control Flow Graph for the first method in a Java program.
+ * Prints Simplified Control Flow Graphs for the methods in Java programs.
+ *
+ * <p>Usage: {@code PrintCfg [-reverse] [-format=dot|jsonl|bin] [-out=DIR] [-j=THREADS] FILE...}
+ *
+ * <p>The input files are parsed and their CFGs are built in parallel. Without {@code -out} the
+ * CFGs are written to stdout in the order of the input files, by a single exporter, so the
+ * output is one stream in the chosen format. With {@code -out} the CFGs for each input file are
+ * written to a separate file in the output directory, named after the input path with the format
+ * extension appended. Absolute input paths are placed in the output directory without their
+ * root, and input paths that would leave the output directory are rejected. A file that fails
+ * to parse, or that has syntax errors, is reported on stderr and skipped, and the remaining files
+ * are still processed. Only a few files per thread are parsed ahead of the file being written,
+ * and each AST is dropped once its CFGs are written.
+ *
+ * <p>If a local analyzer daemon is running, the CFGs are printed by the daemon, see
+ * {@link LocalAnalyzerClient}.
  */
 public class PrintCfg {
 
+  /** The number of input files per thread that are parsed ahead of the exporter. */
+  private static final int WINDOW_PER_THREAD = 2;
+
+  private boolean reverse = false;
+  private CfgExporter.Format format = CfgExporter.Format.DOT;
+  private File outDir = null;
+  private int threads = Runtime.getRuntime().availableProcessors();
+
   public static void main(String args[]) {
-    int exitCode = new PrintCfg().run(args);
+    Integer exitCode = LocalAnalyzerClient.tryRun(LocalAnalyzerClient.PRINT_CFG, args);
+    if (exitCode == null) {
+      exitCode = new PrintCfg().run(args, System.out, System.err);
+    }
     if (exitCode != 0) {
       System.exit(exitCode);
     }
   }
 
-  private int run(String args[]) {
-    Set<String> argSet = new HashSet<>();
-    for (String arg : args) {
-      argSet.add(arg);
+  /** Print the CFGs for the files in the arguments. Returns the exit code. */
+  int run(String args[], OutputStream out, PrintStream err) {
+    List<String> paths = new ArrayList<>();
+    try {
+      for (String arg : args) {
+        if (arg.equals("-reverse")) {
+          reverse = true;
+        } else if (arg.startsWith("-format=")) {
+          format = CfgExporter.Format.forName(arg.substring("-format=".length()));
+        } else if (arg.startsWith("-out=")) {
+          outDir = new File(arg.substring("-out=".length()));
+        } else if (arg.startsWith("-j=")) {
+          threads = Integer.parseInt(arg.substring("-j=".length()));
+          if (threads < 1) {
+            throw new IllegalArgumentException("-j must be positive");
+          }
+        } else {
+          paths.add(arg);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      err.println("Error: " + e.getMessage());
+      return 2;
     }
-    boolean reverse = argSet.contains("-reverse");
-    for (String path : args) {
-      if (!path.equals("-reverse")) {
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      // Without an output directory, all CFGs are written by one exporter on this thread, in the
+      // order of the input files. Closing the exporter must not close the output.
+      CfgExporter exporter = null;
+      if (outDir == null) {
+        exporter = CfgExporter.create(format, new FilterOutputStream(out) {
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+          }
+
+          @Override
+          public void close() throws IOException {
+            flush();
+          }
+        }, reverse);
+      }
+      // At most WINDOW_PER_THREAD files per thread are in progress or waiting to be written, so
+      // that only a bounded number of ASTs are held at any time.
+      int window = threads * WINDOW_PER_THREAD;
+      List<Future<CompilationUnit>> results = new ArrayList<>();
+      for (int i = 0; i < Math.min(window, paths.size()); ++i) {
+        results.add(executor.submit(task(paths.get(i))));
+      }
+      int exitCode = 0;
+      for (int i = 0; i < paths.size(); ++i) {
         try {
-          Program program = new Program();
-          program.setTypeLookupFilter(Program.BASE_LIBRARY_FILTER);
-          CompilationUnit unit = new JavaParser().parse(new FileInputStream(path), path);
-          // Attach the parsed unit to a program node so we have a healthy AST.
-          program.addCompilationUnit(unit);
-          // Ensure compilation unit is set to final. This is important to get
-          // caching to work right in the AST.
-          unit = program.getCompilationUnit(0);
-          for (TypeDecl type : unit.getTypeDeclList()) {
-            for (BodyDecl bd : type.getBodyDeclList()) {
-              if (reverse) {
-                bd.printReverseCfg();
-              } else {
-                bd.printCfg();
-              }
-            }
+          CompilationUnit unit = results.get(i).get();
+          if (exporter != null) {
+            export(exporter, paths.get(i), unit);
+          }
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof ParseErrors) {
+            err.println("Failed to parse input file: " + paths.get(i));
+            err.println(e.getCause().getMessage());
+          } else {
+            err.println("Failed to export CFGs for input file: " + paths.get(i));
+            e.getCause().printStackTrace(err);
           }
-        } catch (Exception e) {
-          System.err.println("Failed to parse input file: " + path);
-          e.printStackTrace();
-          return 1;
+          exitCode = 1;
+        }
+        // Drop the exported unit.
+        results.set(i, null);
+        if (i + window < paths.size()) {
+          results.add(executor.submit(task(paths.get(i + window))));
         }
       }
+      if (exporter != null) {
+        exporter.close();
+      }
+      out.flush();
+      return exitCode;
+    } catch (IOException e) {
+      err.println("Failed to write output: " + e.getMessage());
+      return 1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The task that parses the input file and builds its CFGs. With an output directory the task
+   * also writes the CFGs and returns {@code null}, otherwise it returns the compilation unit.
+   */
+  private Callable<CompilationUnit> task(final String path) {
+    return new Callable<CompilationUnit>() {
+      @Override
+      public CompilationUnit call() throws Exception {
+        if (outDir == null) {
+          return parseAndBuild(path);
+        }
+        File file = outputFile(path);
+        CompilationUnit unit = parseAndBuild(path);
+        try (CfgExporter exporter =
+            CfgExporter.create(format, new FileOutputStream(file), reverse)) {
+          export(exporter, path, unit);
+        }
+        return null;
+      }
+    };
+  }
+
+  /** Thrown for an input file with syntax errors. The message lists the errors. */
+  private static class ParseErrors extends Exception {
+    ParseErrors(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Parse the input file in a new program, and build the CFGs of its body declarations.
+   *
+   * @throws ParseErrors if the file has syntax errors, since its AST is incomplete
+   */
+  private CompilationUnit parseAndBuild(String path) throws Exception {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.BASE_LIBRARY_FILTER);
+    CompilationUnit unit = SourceParser.forCurrentThread().parseFile(path);
+    // Attach the parsed unit to a program node so we have a healthy AST.
+    program.addCompilationUnit(unit);
+    // Ensure compilation unit is set to final. This is important to get
+    // caching to work right in the AST.
+    unit = program.getCompilationUnit(0);
+    if (!unit.parseErrors().isEmpty()) {
+      StringBuilder message = new StringBuilder();
+      for (Problem problem : unit.parseErrors()) {
+        if (message.length() > 0) {
+          message.append('\n');
+        }
+        message.append(problem);
+      }
+      throw new ParseErrors(message.toString());
+    }
+    for (TypeDecl type : unit.getTypeDeclList()) {
+      for (BodyDecl bd : type.getBodyDeclList()) {
+        // Evaluate the CFG here, so that only writing it is left to the exporter.
+        bd.cfgNodes(reverse);
+      }
+    }
+    return unit;
+  }
+
+  /** Export the CFGs for the body declarations in the input file. */
+  private static void export(CfgExporter exporter, String path, CompilationUnit unit)
+      throws IOException {
+    for (TypeDecl type : unit.getTypeDeclList()) {
+      for (BodyDecl bd : type.getBodyDeclList()) {
+        exporter.export(path, bd);
+      }
+    }
+  }
+
+  /**
+   * The output file for the input path, in the output directory. Absolute input paths are placed
+   * in the output directory without their root.
+   *
+   * @throws IOException if the input path would leave the output directory
+   */
+  private File outputFile(String path) throws IOException {
+    Path dir = outDir.toPath().toAbsolutePath().normalize();
+    Path input = Paths.get(path).normalize();
+    if (input.getRoot() != null) {
+      input = input.getRoot().relativize(input);
+    }
+    Path output = dir.resolve(input.toString() + "." + format.extension).normalize();
+    if (!output.startsWith(dir)) {
+      throw new IOException("input path is outside the output directory: " + path);
     }
-    return 0;
+    Files.createDirectories(output.getParent());
+    return output.toFile();
   }
 }
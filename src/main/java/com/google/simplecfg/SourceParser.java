@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.parser.JavaParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Java source parser that is reused for all files parsed on the same thread.
+ *
+ * <p>Creating a parser allocates the parser stacks and action tables, so instead of creating a
+ * new parser per file each thread keeps one parser and one file buffer. Source files are read
+ * with a single channel read into the buffer, and streams with bulk reads into the buffer. The
+ * buffer grows to fit the largest file parsed on the thread.
+ *
+ * <p>Only the parser and the byte buffer are reused, not the scanner. The scanner is the
+ * JavaScanner decorator copied from ExtendJ at build time, and it has no way to reset its input.
+ * It is created inside the generated {@code JavaParser.parse(InputStream, String)} method, which
+ * also attaches the parse errors to the compilation unit. Calling the lower-level
+ * {@code parse(Scanner)} directly would skip that error handling. Reading the whole file into
+ * the buffer means that the scanner's own character buffer is filled from memory.
+ *
+ * <p>A parser is only used by the thread that owns it. If a parse is started while another parse
+ * is in progress on the same thread, the nested parse uses a fresh parser and buffer.
+ */
+public final class SourceParser {
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<SourceParser> PARSERS = new ThreadLocal<SourceParser>() {
+    @Override
+    protected SourceParser initialValue() {
+      return new SourceParser();
+    }
+  };
+
+  private final JavaParser parser = new JavaParser();
+  private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private boolean busy = false;
+
+  private SourceParser() {
+  }
+
+  /** The parser for the current thread. */
+  public static SourceParser forCurrentThread() {
+    SourceParser parser = PARSERS.get();
+    return parser.busy ? new SourceParser() : parser;
+  }
+
+  /**
+   * Parses a compilation unit from the given stream. The stream is read into the buffer before
+   * parsing, so the scanner does not read from the underlying file in small pieces.
+   */
+  public CompilationUnit parse(InputStream is, String fileName)
+      throws IOException, beaver.Parser.Exception {
+    busy = true;
+    try {
+      int length = readStream(is);
+      return parser.parse(new ByteArrayInputStream(buffer.array(), 0, length), fileName);
+    } finally {
+      busy = false;
+    }
+  }
+
+  /** Reads and parses the given source file. */
+  public CompilationUnit parseFile(String path) throws IOException, beaver.Parser.Exception {
+    busy = true;
+    try {
+      int length = readFile(path);
+      return parser.parse(new ByteArrayInputStream(buffer.array(), 0, length), path);
+    } finally {
+      busy = false;
+    }
+  }
+
+  /**
+   * Reads the rest of the stream into the buffer, growing the buffer if needed.
+   * @return the number of bytes read
+   */
+  private int readStream(InputStream is) throws IOException {
+    buffer.clear();
+    int length = 0;
+    while (true) {
+      if (length == buffer.capacity()) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        larger.put(buffer.array(), 0, length);
+        buffer = larger;
+      }
+      int read = is.read(buffer.array(), length, buffer.capacity() - length);
+      if (read < 0) {
+        return length;
+      }
+      length += read;
+    }
+  }
+
+  /**
+   * Reads the whole file into the buffer, growing the buffer if needed.
+   * @return the number of bytes read
+   */
+  private int readFile(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("source file too large: " + path);
+      }
+      if (size > buffer.capacity()) {
+        buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, size + size / 2));
+      }
+      buffer.clear();
+      while (channel.read(buffer) > 0) {
+        if (!buffer.hasRemaining()) {
+          // The file may have grown since we checked its size.
+          ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+          buffer.flip();
+          larger.put(buffer);
+          buffer = larger;
+        }
+      }
+      return buffer.position();
+    }
+  }
+}
@@ -20,9 +20,6 @@ import com.google.simplecfg.ast.Frontend;
 import com.google.simplecfg.ast.CompilationUnit;
 import com.google.simplecfg.ast.BodyDecl;
 import com.google.simplecfg.ast.TypeDecl;
-import com.google.simplecfg.parser.JavaParser;
-
-import java.io.FileInputStream;
 
 /** Generate test cases for the first CFG of each input class. */
 class TestGenerator {
@@ -39,7 +36,7 @@ class TestGenerator {
       try {
         Program program = new Program();
         program.setTypeLookupFilter(Program.BASE_LIBRARY_FILTER);
-        CompilationUnit unit = new JavaParser().parse(new FileInputStream(path), path);
+        CompilationUnit unit = SourceParser.forCurrentThread().parseFile(path);
         // Attach the parsed unit to a program node so we have a healthy AST.
         program.addCompilationUnit(unit);
         // Ensure compilation unit is set to final. This is important to get
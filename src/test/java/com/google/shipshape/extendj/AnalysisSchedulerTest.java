@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** Tests for admission control of analysis requests. */
+@RunWith(JUnit4.class)
+public class AnalysisSchedulerTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Request admission on another thread. */
+  private Future<AnalysisScheduler.Lease> admitLater(final AnalysisScheduler scheduler,
+      final long bytes) {
+    return executor.submit(new Callable<AnalysisScheduler.Lease>() {
+      @Override
+      public AnalysisScheduler.Lease call() throws InterruptedException {
+        return scheduler.admit(bytes);
+      }
+    });
+  }
+
+  /** Wait until the given number of requests are queued. */
+  private static void awaitQueueDepth(AnalysisScheduler scheduler, int depth)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (scheduler.getQueueDepth() != depth) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("expected " + depth + " queued requests");
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  private static void assertNotAdmitted(Future<AnalysisScheduler.Lease> lease) throws Exception {
+    try {
+      lease.get(50, TimeUnit.MILLISECONDS);
+      fail("expected the request to wait");
+    } catch (TimeoutException e) {
+      // Expected.
+    }
+  }
+
+  @Test public void admitsUpToMaxConcurrent() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(2, 10, 1000, 10000);
+    AnalysisScheduler.Lease first = scheduler.admit(10);
+    AnalysisScheduler.Lease second = scheduler.admit(10);
+    assertThat(scheduler.getRunning()).isEqualTo(2);
+
+    Future<AnalysisScheduler.Lease> third = admitLater(scheduler, 10);
+    awaitQueueDepth(scheduler, 1);
+    assertNotAdmitted(third);
+
+    first.close();
+    third.get(10, TimeUnit.SECONDS).close();
+    second.close();
+    assertThat(scheduler.getRunning()).isEqualTo(0);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    assertThat(scheduler.getAdmittedRequests()).isEqualTo(3L);
+  }
+
+  @Test public void reservesEstimatedBytes() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(4, 10, 100, 10000);
+    AnalysisScheduler.Lease first = scheduler.admit(60);
+    assertThat(scheduler.getReservedBytes()).isEqualTo(60L);
+    AnalysisScheduler.Lease second = scheduler.admit(40);
+    assertThat(scheduler.getReservedBytes()).isEqualTo(100L);
+
+    Future<AnalysisScheduler.Lease> third = admitLater(scheduler, 1);
+    awaitQueueDepth(scheduler, 1);
+    assertNotAdmitted(third);
+
+    second.close();
+    // Closing a lease twice releases its bytes once.
+    second.close();
+    AnalysisScheduler.Lease thirdLease = third.get(10, TimeUnit.SECONDS);
+    assertThat(scheduler.getReservedBytes()).isEqualTo(61L);
+    thirdLease.close();
+    first.close();
+    assertThat(scheduler.getReservedBytes()).isEqualTo(0L);
+  }
+
+  @Test public void admitsOversizedRequestWhenIdle() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(2, 10, 100, 10000);
+    AnalysisScheduler.Lease lease = scheduler.admit(1000);
+    assertThat(scheduler.getRunning()).isEqualTo(1);
+    lease.close();
+  }
+
+  @Test public void admitsInArrivalOrder() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(4, 10, 100, 10000);
+    AnalysisScheduler.Lease running = scheduler.admit(60);
+    Future<AnalysisScheduler.Lease> large = admitLater(scheduler, 100);
+    awaitQueueDepth(scheduler, 1);
+
+    // The small request fits next to the running request, but must wait behind the large one.
+    Future<AnalysisScheduler.Lease> small = admitLater(scheduler, 10);
+    awaitQueueDepth(scheduler, 2);
+    assertNotAdmitted(small);
+
+    running.close();
+    AnalysisScheduler.Lease largeLease = large.get(10, TimeUnit.SECONDS);
+    assertNotAdmitted(small);
+    largeLease.close();
+    small.get(10, TimeUnit.SECONDS).close();
+  }
+
+  @Test public void rejectsWhenQueueIsFull() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(1, 1, 100, 10000);
+    AnalysisScheduler.Lease running = scheduler.admit(10);
+    Future<AnalysisScheduler.Lease> queued = admitLater(scheduler, 10);
+    awaitQueueDepth(scheduler, 1);
+    try {
+      scheduler.admit(10);
+      fail("expected the request to be rejected");
+    } catch (RejectedExecutionException e) {
+      assertThat(scheduler.getRejectedQueueFull()).isEqualTo(1L);
+    }
+    running.close();
+    queued.get(10, TimeUnit.SECONDS).close();
+  }
+
+  @Test public void rejectsAfterTimeout() throws Exception {
+    AnalysisScheduler scheduler = new AnalysisScheduler(1, 10, 100, 50);
+    AnalysisScheduler.Lease running = scheduler.admit(10);
+    try {
+      admitLater(scheduler, 10).get(10, TimeUnit.SECONDS);
+      fail("expected the request to time out");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+    }
+    assertThat(scheduler.getRejectedTimeout()).isEqualTo(1L);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    running.close();
+    // A request that timed out does not block the queue.
+    scheduler.admit(10).close();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.CancellationToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for the scheduling of files in analysis requests. */
+@RunWith(JUnit4.class)
+public class ExtendJAnalyzerTest {
+
+  private static final String[] FILES = {
+    "AlreadyClosedControlFlow01.javax",
+    "NullableDereference01.javax",
+    "AlreadyClosedWriter01.javax",
+  };
+
+  private static ShipshapeContext context() {
+    ShipshapeContext.Builder context = ShipshapeContext.newBuilder().setRepoRoot("testdata");
+    for (String file : FILES) {
+      context.addFilePath(file);
+    }
+    return context.build();
+  }
+
+  private static List<Note> analyze(ExtendJAnalyzer analyzer, CancellationToken token,
+      List<FileStatus> statuses) throws Exception {
+    return analyzer.analyze(context(), token, statuses);
+  }
+
+  @Test public void idealMakespan() {
+    // Bounded by the total work divided over the workers.
+    assertThat(ExtendJAnalyzer.idealMakespan(new long[] {10, 10, 10, 10}, 2)).isEqualTo(20L);
+    // Bounded by the longest job.
+    assertThat(ExtendJAnalyzer.idealMakespan(new long[] {50, 10, 10}, 2)).isEqualTo(50L);
+    // Workers without jobs do not lower the ideal makespan.
+    assertThat(ExtendJAnalyzer.idealMakespan(new long[] {10, 10}, 8)).isEqualTo(10L);
+    assertThat(ExtendJAnalyzer.idealMakespan(new long[] {10, 10}, 1)).isEqualTo(20L);
+    assertThat(ExtendJAnalyzer.idealMakespan(new long[0], 4)).isEqualTo(0L);
+  }
+
+  @Test public void parallelFindingsInRequestOrder() throws Exception {
+    List<FileStatus> sequentialStatuses = new ArrayList<>();
+    List<Note> sequential = analyze(new ExtendJAnalyzer(AnalysisBudget.unlimited(), 0, 1),
+        CancellationToken.NONE, sequentialStatuses);
+    List<FileStatus> parallelStatuses = new ArrayList<>();
+    ExtendJAnalyzer analyzer = new ExtendJAnalyzer(AnalysisBudget.unlimited(), 0, 3);
+    List<Note> parallel = analyze(analyzer, CancellationToken.NONE, parallelStatuses);
+
+    assertThat(sequential).isNotEmpty();
+    assertThat(parallel).isEqualTo(sequential);
+    assertThat(parallelStatuses).hasSize(FILES.length);
+    for (int i = 0; i < FILES.length; ++i) {
+      assertThat(parallelStatuses.get(i).path).isEqualTo(FILES[i]);
+      assertThat(parallelStatuses.get(i).status).isEqualTo(FileStatus.Status.OK);
+    }
+    assertThat(analyzer.getTotalIdealMakespanMillis())
+        .isEqualTo(analyzer.getLastIdealMakespanMillis());
+  }
+
+  @Test public void cancelledRequest() throws Exception {
+    CancellationToken token = CancellationToken.create();
+    token.cancel();
+    List<FileStatus> statuses = new ArrayList<>();
+    List<Note> notes = analyze(new ExtendJAnalyzer(AnalysisBudget.unlimited(), 0, 2), token,
+        statuses);
+    assertThat(notes).isEmpty();
+    assertThat(statuses).hasSize(FILES.length);
+    for (FileStatus status : statuses) {
+      assertThat(status.status).isEqualTo(FileStatus.Status.TIMED_OUT);
+    }
+  }
+
+  @Test public void interruptedRequestWaitsForRunningFiles() throws Exception {
+    List<FileStatus> statuses = new ArrayList<>();
+    Thread.currentThread().interrupt();
+    try {
+      analyze(new ExtendJAnalyzer(AnalysisBudget.unlimited(), 0, 2), CancellationToken.create(),
+          statuses);
+    } finally {
+      // The interrupt is restored after the running files have stopped.
+      assertThat(Thread.interrupted()).isTrue();
+    }
+    assertThat(statuses).hasSize(FILES.length);
+    for (FileStatus status : statuses) {
+      assertThat(status.status).isNotEqualTo(FileStatus.Status.FAILED);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the analysis time estimates used to schedule files. */
+@RunWith(JUnit4.class)
+public class FileCostModelTest {
+
+  @Test public void unknownFilesAreEstimatedBySize() {
+    FileCostModel model = new FileCostModel();
+    assertThat(model.estimate("a/Large.java", 20000))
+        .isGreaterThan(model.estimate("a/Small.java", 1000));
+    assertThat(model.estimate("a/Empty.java", 0)).isEqualTo(0.0);
+  }
+
+  @Test public void knownFilesAreEstimatedByHistory() {
+    FileCostModel model = new FileCostModel();
+    model.record("a/Slow.java", 100, 500);
+    assertThat(model.estimate("a/Slow.java", 100)).isEqualTo(500.0);
+    // The moving average moves towards the latest measurement.
+    model.record("a/Slow.java", 100, 100);
+    assertThat(model.estimate("a/Slow.java", 100)).isLessThan(500.0);
+    assertThat(model.estimate("a/Slow.java", 100)).isGreaterThan(100.0);
+  }
+
+  @Test public void sizeEstimateLearnsFromMeasurements() {
+    FileCostModel model = new FileCostModel();
+    double before = model.estimate("a/Other.java", 1000);
+    model.record("a/Measured.java", 1000, 10000);
+    assertThat(model.estimate("a/Other.java", 1000)).isGreaterThan(before);
+  }
+}
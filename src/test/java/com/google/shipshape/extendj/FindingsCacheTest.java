@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.CancellationToken;
+import com.google.simplecfg.ast.ExtendJFinding;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/** Tests for caching the findings of analyzed files. */
+@RunWith(JUnit4.class)
+public class FindingsCacheTest {
+
+  private static final String FILE = "testdata/AlreadyClosedControlFlow01.javax";
+  private static final long MAX_BYTES = 1024 * 1024;
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  /** The findings as "path:line:column: message" strings. */
+  private static List<String> describe(Collection<ExtendJFinding> findings) {
+    List<String> lines = new ArrayList<>();
+    for (ExtendJFinding finding : findings) {
+      lines.add(finding.toString());
+    }
+    return lines;
+  }
+
+  @Test public void hit() throws Exception {
+    FindingsCache cache = new FindingsCache(MAX_BYTES);
+    AnalysisBudget budget = AnalysisBudget.unlimited();
+    List<String> first = describe(cache.analyzeFile(FILE, budget, CancellationToken.NONE));
+    List<String> second = describe(cache.analyzeFile(FILE, budget, CancellationToken.NONE));
+    assertThat(first).isNotEmpty();
+    assertThat(second).isEqualTo(first);
+    assertThat(cache.stats().hitCount()).isEqualTo(1L);
+    assertThat(cache.size()).isEqualTo(1L);
+  }
+
+  /** A file with the same contents at another path gets the findings for its own path. */
+  @Test public void relocation() throws Exception {
+    FindingsCache cache = new FindingsCache(MAX_BYTES);
+    AnalysisBudget budget = AnalysisBudget.unlimited();
+    Collection<ExtendJFinding> original = cache.analyzeFile(FILE, budget, CancellationToken.NONE);
+    File copy = new File(tmp.getRoot(), "Copy.javax");
+    Files.copy(Paths.get(FILE), copy.toPath());
+    Collection<ExtendJFinding> relocated =
+        cache.analyzeFile(copy.getPath(), budget, CancellationToken.NONE);
+    assertThat(cache.stats().hitCount()).isEqualTo(1L);
+
+    List<String> expected = new ArrayList<>();
+    for (String finding : describe(original)) {
+      expected.add(copy.getPath() + finding.substring(FILE.length()));
+    }
+    assertThat(describe(relocated)).isEqualTo(expected);
+  }
+
+  /** Findings of the same contents analyzed with other budget limits are not reused. */
+  @Test public void budgetLimitsAreInTheKey() throws Exception {
+    FindingsCache cache = new FindingsCache(MAX_BYTES);
+    cache.analyzeFile(FILE, AnalysisBudget.unlimited(), CancellationToken.NONE);
+    cache.analyzeFile(FILE, new AnalysisBudget(0, 1000000, 0), CancellationToken.NONE);
+    assertThat(cache.stats().hitCount()).isEqualTo(0L);
+    assertThat(cache.size()).isEqualTo(2L);
+  }
+
+  /** Findings of an analysis that skipped work due to the budget are not cached. */
+  @Test public void skippedWorkIsNotCached() throws Exception {
+    FindingsCache cache = new FindingsCache(MAX_BYTES);
+    AnalysisBudget budget = new AnalysisBudget(2, 0, 0);
+    cache.analyzeFile(FILE, budget, CancellationToken.NONE);
+    assertThat(budget.skippedMethods.get()).isGreaterThan(0L);
+    assertThat(cache.size()).isEqualTo(0L);
+
+    cache.analyzeFile(FILE, budget, CancellationToken.NONE);
+    assertThat(cache.stats().hitCount()).isEqualTo(0L);
+  }
+}
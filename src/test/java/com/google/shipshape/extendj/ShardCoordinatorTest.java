@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+import com.google.shipshape.service.AnalyzerException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for sharding requests over several backends. */
+@RunWith(JUnit4.class)
+public class ShardCoordinatorTest {
+
+  private static final String[] FILES = {
+    "AlreadyClosedControlFlow01.javax",
+    "NullableDereference01.javax",
+    "AlreadyClosedWriter01.javax",
+  };
+
+  private final List<ShardCoordinator> coordinators = new ArrayList<>();
+
+  @After public void shutdown() {
+    for (ShardCoordinator coordinator : coordinators) {
+      coordinator.shutdown();
+    }
+  }
+
+  private ShardCoordinator coordinator(ShardBackend... backends) {
+    ShardCoordinator coordinator =
+        new ShardCoordinator(Arrays.asList(backends), new FileCostModel());
+    coordinators.add(coordinator);
+    return coordinator;
+  }
+
+  static ShipshapeContext context(String... files) {
+    return ShipshapeContext.newBuilder()
+        .setRepoRoot("testdata")
+        .addAllFilePath(Arrays.asList(files))
+        .build();
+  }
+
+  private static ShardBackend local(String name) {
+    return new LocalShardBackend(name, new ExtendJAnalyzer());
+  }
+
+  /** A backend that fails every shard containing the given file. */
+  private static ShardBackend failingOn(final String name, final String file) {
+    final ShardBackend local = local(name);
+    return new ShardBackend() {
+      @Override
+      public String name() {
+        return name;
+      }
+
+      @Override
+      public List<Note> analyze(ShipshapeContext shard) throws Exception {
+        if (shard.getFilePathList().contains(file)) {
+          throw new IOException("backend " + name + " is down");
+        }
+        return local.analyze(shard);
+      }
+    };
+  }
+
+  private static List<Note> expected(String... files) throws Exception {
+    return new ExtendJAnalyzer().analyze(context(files));
+  }
+
+  @Test public void shardedFindingsMatchSingleAnalyzer() throws Exception {
+    List<Note> notes = coordinator(local("a"), local("b")).analyze(context(FILES));
+    assertThat(notes).isNotEmpty();
+    assertThat(notes).containsExactlyElementsIn(expected(FILES));
+  }
+
+  @Test public void failedShardIsRetriedOnOtherBackend() throws Exception {
+    ShardCoordinator coordinator = coordinator(failingOn("a", FILES[0]), local("b"));
+    assertThat(coordinator.analyze(context(FILES))).containsExactlyElementsIn(expected(FILES));
+  }
+
+  @Test public void failedShardIsReportedPerFile() throws Exception {
+    ShardCoordinator coordinator =
+        coordinator(failingOn("a", FILES[0]), failingOn("b", FILES[0]));
+    List<FileStatus> failures = new ArrayList<>();
+    List<Note> notes = coordinator.analyze(context(FILES), failures);
+
+    // The shard with the failing file may also contain other files.
+    List<String> failedPaths = new ArrayList<>();
+    for (FileStatus failure : failures) {
+      assertThat(failure.status).isEqualTo(FileStatus.Status.FAILED);
+      failedPaths.add(failure.path);
+    }
+    assertThat(failedPaths).contains(FILES[0]);
+    assertThat(failedPaths.size()).isLessThan(FILES.length);
+    List<String> analyzed = new ArrayList<>(Arrays.asList(FILES));
+    analyzed.removeAll(failedPaths);
+    assertThat(notes).containsExactlyElementsIn(expected(analyzed.toArray(new String[0])));
+
+    List<Note> withFailures = coordinator.analyze(context(FILES));
+    int incomplete = 0;
+    for (Note note : withFailures) {
+      if (note.getSubcategory().equals(ShipshapeFindingAdapter.INCOMPLETE_ANALYSIS)) {
+        incomplete += 1;
+      }
+    }
+    assertThat(incomplete).isEqualTo(failedPaths.size());
+  }
+
+  @Test public void allShardsFailed() throws Exception {
+    ShardCoordinator coordinator = coordinator(failingOn("a", FILES[0]));
+    try {
+      coordinator.analyze(context(FILES));
+      fail("expected the request to fail");
+    } catch (AnalyzerException e) {
+      assertThat(e.getMessage()).contains("is down");
+    }
+  }
+
+  /** The running shards are cancelled when the request is interrupted. */
+  @Test public void interruptCancelsShards() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    ShardBackend blocking = new ShardBackend() {
+      @Override
+      public String name() {
+        return "blocking";
+      }
+
+      @Override
+      public List<Note> analyze(ShipshapeContext shard) throws Exception {
+        started.countDown();
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(10));
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw e;
+        }
+        return new ArrayList<>();
+      }
+    };
+    ShardCoordinator coordinator = coordinator(blocking);
+    final Thread request = Thread.currentThread();
+    Thread interrupter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          started.await();
+          request.interrupt();
+        } catch (InterruptedException e) {
+          // Stopped.
+        }
+      }
+    });
+    interrupter.start();
+    try {
+      coordinator.analyze(context(FILES));
+      fail("expected the request to be interrupted");
+    } catch (AnalyzerException e) {
+      assertThat(Thread.interrupted()).isTrue();
+    }
+    interrupter.join();
+    assertThat(interrupted.await(30, TimeUnit.SECONDS)).isTrue();
+  }
+}
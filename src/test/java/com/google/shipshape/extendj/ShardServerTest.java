@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.shipshape.extendj;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.shipshape.proto.NotesProto.Note;
+import com.google.shipshape.proto.ShipshapeContextProto.ShipshapeContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+
+/** Tests for serving shard requests over HTTP. */
+@RunWith(JUnit4.class)
+public class ShardServerTest {
+
+  private static final String TOKEN = "shard-test-token";
+
+  private ShardServer server;
+
+  @Before public void start() throws IOException {
+    server = new ShardServer(InetAddress.getLoopbackAddress(), 0, TOKEN,
+        new ExtendJAnalyzer(), 2);
+    server.start();
+  }
+
+  @After public void stop() {
+    server.stop();
+  }
+
+  private HttpShardBackend backend(String token) {
+    return new HttpShardBackend(server.getAddress().getHostString(),
+        server.getAddress().getPort(), token, 60000);
+  }
+
+  @Test public void boundToLoopback() {
+    assertThat(server.getAddress().getAddress().isLoopbackAddress()).isTrue();
+  }
+
+  @Test public void analyzesShard() throws Exception {
+    ShipshapeContext shard = ShardCoordinatorTest.context(
+        "AlreadyClosedControlFlow01.javax", "NullableDereference01.javax");
+    List<Note> notes = backend(TOKEN).analyze(shard);
+    List<Note> expected = new LocalShardBackend("local", new ExtendJAnalyzer()).analyze(shard);
+    assertThat(notes).isNotEmpty();
+    assertThat(notes).isEqualTo(expected);
+  }
+
+  @Test public void rejectsInvalidToken() throws Exception {
+    try {
+      backend("wrong").analyze(ShardCoordinatorTest.context("AlreadyClosedControlFlow01.javax"));
+      fail("expected the request to be rejected");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("HTTP 401");
+    }
+  }
+
+  @Test public void requiresToken() throws IOException {
+    try {
+      new ShardServer(InetAddress.getLoopbackAddress(), 0, "", new ExtendJAnalyzer(), 1);
+      fail("expected a token to be required");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collection;
+
+/** Tests that the analyses stay within the analysis budget. */
+@RunWith(JUnit4.class)
+public class AnalysisBudgetTest {
+
+  private static Collection<String> findings(String filename, AnalysisBudget budget) {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.NO_TYPE_FILTER);
+    program.setAnalysisBudget(budget);
+    return StmtCfgTest.findings(filename, program);
+  }
+
+  @Test public void unlimited() {
+    AnalysisBudget budget = new AnalysisBudget(0, 0, 0);
+    assertThat(findings("AlreadyClosedControlFlow01", budget)).isNotEmpty();
+    assertThat(budget.hasSkippedWork()).isFalse();
+  }
+
+  @Test public void unlimitedBudgetsAreNotShared() {
+    AnalysisBudget budget = AnalysisBudget.unlimited();
+    budget.prefilteredMethods.incrementAndGet();
+    assertThat(AnalysisBudget.unlimited()).isNotSameAs(budget);
+    assertThat(AnalysisBudget.unlimited().prefilteredMethods.get()).isEqualTo(0L);
+    assertThat(new Program().getAnalysisBudget()).isNotSameAs(new Program().getAnalysisBudget());
+  }
+
+  @Test public void nodeBudget() {
+    AnalysisBudget budget = new AnalysisBudget(1, 0, 0);
+    assertThat(findings("AlreadyClosedControlFlow01", budget)).isEmpty();
+    assertThat(budget.skippedMethods.get()).isGreaterThan(0L);
+  }
+
+  @Test public void searchEdgeBudget() {
+    AnalysisBudget budget = new AnalysisBudget(0, 1, 0);
+    assertThat(findings("AlreadyClosedControlFlow01", budget)).isEmpty();
+    assertThat(budget.abortedSearches.get()).isGreaterThan(0L);
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.AnalysisBudget;
+import com.google.simplecfg.ast.AnalysisUnit;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.LambdaBody;
+import com.google.simplecfg.ast.MethodSummaryCache;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.TypeDecl;
+import com.google.simplecfg.ast.TypeLookupFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+/** Tests for the analysis candidate pre-pass. */
+@RunWith(JUnit4.class)
+public class AnalysisCandidatesTest {
+
+  private static Program program(TypeLookupFilter typeFilter, AnalysisBudget budget) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    program.setAnalysisBudget(budget);
+    return program;
+  }
+
+  private static Collection<Integer> findingLines(CompilationUnit unit) {
+    Collection<Integer> lines = new LinkedList<Integer>();
+    for (ExtendJFinding finding : unit.findings()) {
+      lines.add(finding.startLine);
+    }
+    return lines;
+  }
+
+  @Test public void alreadyClosed() {
+    AnalysisBudget budget = new AnalysisBudget(0, 0, 0);
+    CompilationUnit unit = StmtCfgTest.parseFile("AnalysisCandidatesClose01",
+        program(Program.NO_TYPE_FILTER, budget));
+    assertThat(findingLines(unit)).containsExactly(28);
+    TypeDecl type = unit.getTypeDecl(0);
+    assertThat(type.getBodyDecl(0).analysisCandidates().isEmpty()).isTrue();
+    assertThat(type.getBodyDecl(1).analysisCandidates().size()).isEqualTo(1);
+    // Only writeOnly() was consulted by an analysis and had no candidates.
+    assertThat(budget.prefilteredMethods.get()).isEqualTo(1L);
+    assertThat(budget.hasSkippedWork()).isFalse();
+  }
+
+  @Test public void nullableDereference() {
+    AnalysisBudget budget = new AnalysisBudget(0, 0, 0);
+    CompilationUnit unit = StmtCfgTest.parseFile("AnalysisCandidatesNullable01",
+        program(Program.ANALYZER_TYPE_FILTER, budget));
+    assertThat(findingLines(unit)).containsExactly(30);
+    // Both unused() and passed() have no candidates.
+    assertThat(budget.prefilteredMethods.get()).isEqualTo(2L);
+  }
+
+  @Test public void lambdaBodies() {
+    AnalysisBudget budget = new AnalysisBudget(0, 0, 0);
+    CompilationUnit unit = StmtCfgTest.parseFile("AnalysisUnitsLambda01",
+        program(Program.NO_TYPE_FILTER, budget));
+    assertThat(findingLines(unit)).containsExactly(30);
+    List<LambdaBody> lambdas = new ArrayList<LambdaBody>();
+    for (AnalysisUnit analysisUnit : unit.analysisUnits()) {
+      if (analysisUnit instanceof LambdaBody) {
+        lambdas.add((LambdaBody) analysisUnit);
+      }
+    }
+    assertThat(lambdas).hasSize(3);
+    assertThat(lambdas.get(0).analysisCandidates().size()).isEqualTo(1);
+    assertThat(lambdas.get(1).analysisCandidates().isEmpty()).isTrue();
+    // The log is closed in the enclosing method, not in the lambda.
+    assertThat(lambdas.get(2).analysisCandidates().isEmpty()).isTrue();
+    assertThat(budget.prefilteredMethods.get()).isEqualTo(2L);
+  }
+
+  @Test public void argumentsWithMethodSummaries() {
+    AnalysisBudget budget = new AnalysisBudget(0, 0, 0);
+    Program program = program(Program.ANALYZER_TYPE_FILTER, budget);
+    program.setMethodSummaryCache(new MethodSummaryCache());
+    CompilationUnit unit = StmtCfgTest.parseFile("AnalysisCandidatesNullable01", program);
+    assertThat(findingLines(unit)).containsExactly(26, 30);
+    assertThat(budget.prefilteredMethods.get()).isEqualTo(1L);
+  }
+}
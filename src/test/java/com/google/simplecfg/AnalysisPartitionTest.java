@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.AnalysisPartition;
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Tests that partitioned analysis gives the same findings as unpartitioned analysis. */
+@RunWith(JUnit4.class)
+public class AnalysisPartitionTest {
+
+  private static Collection<String> findings(String filename, AnalysisPartition partition) {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.ANALYZER_TYPE_FILTER);
+    program.setAnalysisPartition(partition);
+    return StmtCfgTest.findings(filename, program);
+  }
+
+  /** Checks that each finding is reported by exactly one of the partitions. */
+  private static void checkPartitions(String filename, int count) {
+    Collection<String> expected = findings(filename, AnalysisPartition.ALL);
+    Set<String> actual = new HashSet<String>();
+    for (int i = 0; i < count; ++i) {
+      for (String finding : findings(filename, new AnalysisPartition(i, count))) {
+        assertThat(actual.add(finding)).isTrue();
+      }
+    }
+    assertThat(actual).containsExactlyElementsIn(expected);
+  }
+
+  @Test public void alreadyClosedControlFlow01() {
+    checkPartitions("AlreadyClosedControlFlow01", 3);
+  }
+
+  @Test public void nullableNullGuard01() {
+    checkPartitions("NullableNullGuard01", 2);
+  }
+
+  @Test public void lambdaBodies() {
+    checkPartitions("AnalysisUnitsLambda01", 3);
+    // The lambda with the finding is not in the partition of the enclosing method.
+    assertThat(findings("AnalysisUnitsLambda01", new AnalysisPartition(0, 3))).isEmpty();
+  }
+
+  /** The findings of the analyzer frontend, in the order it reports them. */
+  private static List<String> frontendFindings(int workers, String... files) {
+    List<String> args = new ArrayList<String>();
+    args.add("-body-decl-workers=" + workers);
+    for (String file : files) {
+      args.add(file);
+    }
+    ExtendJAnalyzerFrontend frontend = new ExtendJAnalyzerFrontend();
+    assertThat(frontend.run(args.toArray(new String[0])))
+        .isEqualTo(ExtendJAnalyzerFrontend.EXIT_SUCCESS);
+    List<String> findings = new ArrayList<String>();
+    for (ExtendJFinding finding : frontend.getFindings()) {
+      findings.add(finding.toString());
+    }
+    return findings;
+  }
+
+  @Test public void bodyDeclWorkers() {
+    // The files are not in path order.
+    String[] files = {
+      "testdata/NullableNullGuard01.javax",
+      "testdata/AlreadyClosedControlFlow01.javax",
+      "testdata/AnalysisUnitsLambda01.javax",
+    };
+    List<String> expected = frontendFindings(1, files);
+    assertThat(expected).isNotEmpty();
+    assertThat(frontendFindings(2, files)).isEqualTo(expected);
+    assertThat(frontendFindings(3, files)).isEqualTo(expected);
+  }
+
+  /** With fewer files than workers, the analysis units of each file are divided. */
+  @Test public void bodyDeclWorkersSingleFile() {
+    String file = "testdata/AlreadyClosedControlFlow01.javax";
+    List<String> expected = frontendFindings(1, file);
+    assertThat(expected).isNotEmpty();
+    assertThat(frontendFindings(3, file)).isEqualTo(expected);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPartition() {
+    new AnalysisPartition(2, 2);
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.simplecfg.ast.AnalysisCancelled;
+import com.google.simplecfg.ast.CancellationToken;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for cooperative cancellation of analyses. */
+@RunWith(JUnit4.class)
+public class CancellationTest {
+
+  private static CompilationUnit parseFile(String filename, CancellationToken token) {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.NO_TYPE_FILTER);
+    program.setCancellationToken(token);
+    return StmtCfgTest.parseFile(filename, program);
+  }
+
+  @Test public void notCancelled() {
+    CompilationUnit unit = parseFile("AlreadyClosedControlFlow01", CancellationToken.create());
+    assertThat(unit.findings()).isNotEmpty();
+  }
+
+  @Test public void cancelled() {
+    CancellationToken token = CancellationToken.create();
+    CompilationUnit unit = parseFile("AlreadyClosedControlFlow01", token);
+    token.cancel();
+    try {
+      unit.findings();
+      fail("expected the analysis to be cancelled");
+    } catch (AnalysisCancelled e) {
+      // Expected.
+    }
+  }
+
+  @Test public void noneIsNeverCancelled() {
+    CancellationToken.NONE.cancel();
+    assertThat(CancellationToken.NONE.isCancelled()).isFalse();
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgCachePolicy;
+import com.google.simplecfg.ast.CfgProfile;
+import com.google.simplecfg.ast.CfgSize;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.TypeLookupFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collection;
+
+/** Tests for the cache policies and profiling of the entry() and follow() attributes. */
+@RunWith(JUnit4.class)
+public class CfgEvaluationTest {
+
+  private static Program program(TypeLookupFilter typeFilter, CfgCachePolicy policy) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    program.setCfgCachePolicy(policy);
+    program.setCfgProfiling(true);
+    return program;
+  }
+
+  private static CfgSize size(Program program) {
+    CompilationUnit unit = StmtCfgTest.parseFile("CfgCache01", program);
+    return unit.getTypeDecl(0).getBodyDecl(0).entry().size();
+  }
+
+  /** The number of entry() and follow() evaluations needed to build the CFG. */
+  private static long evaluations(CfgCachePolicy policy) {
+    Program program = program(Program.NO_TYPE_FILTER, policy);
+    size(program);
+    return program.takeCfgProfile().evaluations();
+  }
+
+  @Test public void sameCfg() {
+    CfgSize expected = size(program(Program.NO_TYPE_FILTER, CfgCachePolicy.ON_DEMAND));
+    for (CfgCachePolicy policy : CfgCachePolicy.values()) {
+      CfgSize size = size(program(Program.NO_TYPE_FILTER, policy));
+      assertThat(size.nodes).isEqualTo(expected.nodes);
+      assertThat(size.edges).isEqualTo(expected.edges);
+    }
+  }
+
+  @Test public void sameFindings() {
+    Collection<String> expected = StmtCfgTest.findings("NullableNullGuard01",
+        program(Program.ANALYZER_TYPE_FILTER, CfgCachePolicy.ON_DEMAND));
+    for (CfgCachePolicy policy : CfgCachePolicy.values()) {
+      assertThat(StmtCfgTest.findings("NullableNullGuard01",
+          program(Program.ANALYZER_TYPE_FILTER, policy))).containsExactlyElementsIn(expected);
+    }
+  }
+
+  @Test public void fewerEvaluations() {
+    long onDemand = evaluations(CfgCachePolicy.ON_DEMAND);
+    assertThat(evaluations(CfgCachePolicy.LAZY)).isLessThan(onDemand);
+    assertThat(evaluations(CfgCachePolicy.PER_CFG)).isLessThan(onDemand);
+  }
+
+  @Test public void profile() {
+    Program program = program(Program.NO_TYPE_FILTER, CfgCachePolicy.LAZY);
+    size(program);
+    CfgProfile profile = program.takeCfgProfile();
+    assertThat(profile.hottest(3)).hasSize(3);
+    assertThat(profile.hottest(1000).size()).isLessThan(1000);
+    // Taking the profile starts a new one.
+    assertThat(program.takeCfgProfile().evaluations()).isEqualTo(0L);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void policyChangeAfterBuild() {
+    Program program = program(Program.NO_TYPE_FILTER, CfgCachePolicy.LAZY);
+    size(program);
+    program.setCfgCachePolicy(CfgCachePolicy.PER_CFG);
+  }
+}
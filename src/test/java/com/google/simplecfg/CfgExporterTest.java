@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.BodyDecl;
+import com.google.simplecfg.ast.CfgSize;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+
+/** Tests for exporting CFGs in the supported formats. */
+@RunWith(JUnit4.class)
+public class CfgExporterTest {
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static BodyDecl close01() {
+    CompilationUnit unit = StmtCfgTest.parseFile("Close01", Program.NO_TYPE_FILTER);
+    return unit.getTypeDecl(0).getBodyDecl(0);
+  }
+
+  private static byte[] export(CfgExporter.Format format, BodyDecl bd) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CfgExporter exporter = CfgExporter.create(format, out, false)) {
+      exporter.export("Close01.java", bd);
+    }
+    return out.toByteArray();
+  }
+
+  @Test public void dot() throws Exception {
+    BodyDecl bd = close01();
+    String dot = new String(export(CfgExporter.Format.DOT, bd), StandardCharsets.UTF_8);
+    assertThat(dot).startsWith("digraph " + bd.graphName() + " {\n");
+    assertThat(dot).endsWith("}\n");
+  }
+
+  @Test public void jsonLines() throws Exception {
+    BodyDecl bd = close01();
+    String json = new String(export(CfgExporter.Format.JSONL, bd), StandardCharsets.UTF_8);
+    assertThat(json).startsWith("{\"file\":\"Close01.java\",\"graph\":\"" + bd.graphName()
+        + "\",");
+    assertThat(json).contains("\"nodes\":[{\"kind\":\"entry\",\"label\":\"entry\"}");
+    assertThat(json).endsWith("]}\n");
+    assertThat(json.indexOf('\n')).isEqualTo(json.length() - 1);
+  }
+
+  @Test public void binary() throws Exception {
+    BodyDecl bd = close01();
+    CfgSize size = bd.entry().size();
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(export(CfgExporter.Format.BIN, bd)));
+    assertThat(in.readInt()).isEqualTo(CfgExporter.BinaryExporter.MAGIC);
+    assertThat(in.readInt()).isEqualTo(CfgExporter.BinaryExporter.VERSION);
+    assertThat(in.readUTF()).isEqualTo("Close01.java");
+    assertThat(in.readUTF()).isEqualTo(bd.graphName());
+    in.readInt(); // Line.
+    assertThat(in.readInt()).isEqualTo(size.nodes);
+    assertThat(in.readByte()).isEqualTo((byte) 0); // The entry node.
+    in.skipBytes(size.nodes - 1);
+    assertThat(in.readInt()).isEqualTo(size.edges);
+    in.skipBytes(size.edges * 8);
+    assertThat(in.read()).isEqualTo(-1);
+  }
+
+  /** All files printed to stdout share one binary header. */
+  @Test public void printCfgBinaryStdout() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int exitCode = new PrintCfg().run(new String[] {
+          "-format=bin", "-j=2", "testdata/Close01.javax", "testdata/Close01.javax" },
+        out, new PrintStream(err));
+    assertThat(exitCode).isEqualTo(0);
+    BodyDecl bd = close01();
+    CfgSize size = bd.entry().size();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertThat(in.readInt()).isEqualTo(CfgExporter.BinaryExporter.MAGIC);
+    assertThat(in.readInt()).isEqualTo(CfgExporter.BinaryExporter.VERSION);
+    for (int i = 0; i < 2; ++i) {
+      assertThat(in.readUTF()).isEqualTo("testdata/Close01.javax");
+      assertThat(in.readUTF()).isEqualTo(bd.graphName());
+      in.readInt(); // Line.
+      assertThat(in.readInt()).isEqualTo(size.nodes);
+      in.skipBytes(size.nodes);
+      assertThat(in.readInt()).isEqualTo(size.edges);
+      in.skipBytes(size.edges * 8);
+    }
+    assertThat(in.read()).isEqualTo(-1);
+  }
+
+  /** Files with syntax errors are reported and skipped, in the order of the input files. */
+  @Test public void printCfgParseErrors() throws Exception {
+    File broken = new File(tmp.getRoot(), "Broken.java");
+    Files.write(broken.toPath(), "class Broken {\n  void m( {\n}\n"
+        .getBytes(StandardCharsets.UTF_8));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int exitCode = new PrintCfg().run(new String[] {
+          "-format=jsonl", "-j=1", broken.getPath(), "testdata/Close01.javax",
+          "testdata/Close01.javax", "testdata/Close01.javax" },
+        out, new PrintStream(err));
+    assertThat(exitCode).isEqualTo(1);
+    assertThat(err.toString()).contains("Failed to parse input file: " + broken.getPath());
+    String output = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(output.contains("Broken")).isFalse();
+    assertThat(output.split("\n")).hasLength(3);
+  }
+
+  /** Input paths can not be used to write outside the output directory. */
+  @Test public void printCfgOutputEscape() throws Exception {
+    File outDir = tmp.newFolder("out");
+    File input = new File(tmp.getRoot(), "Close01.javax");
+    Files.copy(new File("testdata/Close01.javax").toPath(), input.toPath());
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int exitCode = new PrintCfg().run(new String[] {
+          "-out=" + outDir.getPath(), "-format=dot", "../Close01.javax" },
+        new ByteArrayOutputStream(), new PrintStream(err));
+    assertThat(exitCode).isEqualTo(1);
+    assertThat(err.toString()).contains("outside the output directory");
+    assertThat(new File(tmp.getRoot(), "Close01.javax.dot").exists()).isFalse();
+
+    // Absolute paths are placed in the output directory without their root.
+    String absolute = outDir.getAbsolutePath() + "/../Close01.javax";
+    exitCode = new PrintCfg().run(new String[] { "-out=" + outDir.getPath(), absolute },
+        new ByteArrayOutputStream(), new PrintStream(new ByteArrayOutputStream()));
+    assertThat(exitCode).isEqualTo(0);
+    String relative = input.getAbsolutePath().substring(1);
+    assertThat(new File(outDir, relative + ".dot").exists()).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownFormat() {
+    CfgExporter.Format.forName("svg");
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgNodeIndex;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.EnhancedForStmt;
+import com.google.simplecfg.ast.InstanceInitializer;
+import com.google.simplecfg.ast.MethodDecl;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.Variable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the CFG node index. */
+@RunWith(JUnit4.class)
+public class CfgIndexTest {
+
+  @Test public void callsOnReceiver() {
+    CompilationUnit unit = StmtCfgTest.parseFile("Close01", Program.NO_TYPE_FILTER);
+    MethodDecl method = (MethodDecl) unit.getTypeDecl(0).getBodyDecl(0);
+    Variable writer = method.getParameter(0);
+    CfgNodeIndex index = method.entry().index();
+    assertThat(index.callsOn(writer)).hasSize(2);
+    assertThat(index.callsNamed("close")).hasSize(1);
+    assertThat(index.callsNamed("write")).hasSize(1);
+    assertThat(index.callsNamed("flush")).isEmpty();
+    assertThat(index.hasCloseCall(writer)).isTrue();
+  }
+
+  @Test public void branchDeclarations() {
+    CompilationUnit unit = StmtCfgTest.parseFile("EnhancedFor01", Program.BASE_LIBRARY_FILTER);
+    InstanceInitializer init = (InstanceInitializer) unit.getTypeDecl(0).getBodyDecl(0);
+    EnhancedForStmt stmt = (EnhancedForStmt) init.getBlock().getStmt(0);
+    CfgNodeIndex index = init.entry().index();
+    assertThat(index.declarationsOf(stmt.getVariableDecl())).containsExactly(stmt.branch());
+    assertThat(index.callsOn(stmt.getVariableDecl())).isEmpty();
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgNode;
+import com.google.simplecfg.ast.CfgSpan;
+import com.google.simplecfg.ast.CfgSpanKind;
+import com.google.simplecfg.ast.CfgTracer;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/** Tests for tracing the CFG operations of single methods. */
+@RunWith(JUnit4.class)
+public class CfgTracingTest {
+
+  /** Records each ended span as a string. */
+  private static class RecordingTracer implements CfgTracer {
+    final List<String> spans = new ArrayList<String>();
+    final List<Integer> edges = new ArrayList<Integer>();
+
+    @Override
+    public CfgSpan begin(final CfgSpanKind kind, final String detail) {
+      return new CfgSpan() {
+        @Override
+        public void end(CfgNode node, int nodeCount, int edgeCount) {
+          spans.add(String.format("%s %s %s %s", kind, detail, node.traceFile(),
+              node.traceMethod()));
+          edges.add(edgeCount);
+        }
+      };
+    }
+  }
+
+  private static Collection<String> findings(String filename, CfgTracer tracer) {
+    Program program = new Program();
+    program.setTypeLookupFilter(Program.NO_TYPE_FILTER);
+    program.setCfgTracer(tracer);
+    return StmtCfgTest.findings(filename, program);
+  }
+
+  @Test public void alreadyClosedSpans() {
+    RecordingTracer tracer = new RecordingTracer();
+    Collection<String> findings = findings("AnalysisCandidatesClose01", tracer);
+    assertThat(findings).isEqualTo(findings("AnalysisCandidatesClose01", CfgTracer.NONE));
+    String method = "testdata/AnalysisCandidatesClose01.javax "
+        + "AnalysisCandidatesClose01.closeThenWrite(java.io.Writer)";
+    assertThat(tracer.spans).containsAllOf(
+        "CFG_BUILD index " + method,
+        "PREDECESSORS initPredecessors " + method,
+        "SEARCH sparse reverseBfs " + method,
+        "ANALYSIS AlreadyClosed " + method);
+    for (String span : tracer.spans) {
+      // The other methods are skipped before their CFG is built.
+      assertThat(span).endsWith(method);
+    }
+    for (int edges : tracer.edges) {
+      assertThat(edges).isGreaterThan(0);
+    }
+  }
+
+  @Test public void nullableDereferenceSpans() {
+    RecordingTracer tracer = new RecordingTracer();
+    findings("NullableDereference01", tracer);
+    assertThat(tracer.spans).contains("ANALYSIS NullableDereference "
+        + "testdata/NullableDereference01.javax NullableDereference01.p1(java.lang.String[])");
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.BodyDecl;
+import com.google.simplecfg.ast.CfgExceptionModel;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.TypeLookupFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collection;
+
+/**
+ * Tests that the analyzers report the same findings when CFGs are built with one exception node
+ * per try region as with one exception node per method call.
+ */
+@RunWith(JUnit4.class)
+public class ExceptionModelTest {
+
+  private static Program program(TypeLookupFilter typeFilter, CfgExceptionModel model) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    program.setExceptionModel(model);
+    return program;
+  }
+
+  private static void assertSameFindings(String filename, TypeLookupFilter typeFilter) {
+    Collection<String> expected = StmtCfgTest.findings(filename,
+        program(typeFilter, CfgExceptionModel.PER_CALL));
+    assertThat(StmtCfgTest.findings(filename, program(typeFilter, CfgExceptionModel.PER_REGION)))
+        .containsExactlyElementsIn(expected);
+  }
+
+  /** The total number of CFG nodes for all body declarations in a test file. */
+  private static int cfgNodes(String filename, CfgExceptionModel model) {
+    CompilationUnit unit = StmtCfgTest.parseFile(filename,
+        program(Program.NO_TYPE_FILTER, model));
+    int nodes = 0;
+    for (BodyDecl bd : unit.bodyDecls()) {
+      nodes += bd.entry().size().nodes;
+    }
+    return nodes;
+  }
+
+  @Test public void alreadyClosedControlFlow01() {
+    assertSameFindings("AlreadyClosedControlFlow01", Program.NO_TYPE_FILTER);
+  }
+
+  @Test public void sharedFinally01() {
+    assertSameFindings("SharedFinally01", Program.NO_TYPE_FILTER);
+    assertSameFindings("SharedFinally01", Program.ANALYZER_TYPE_FILTER);
+  }
+
+  @Test public void nullableNullGuard01() {
+    assertSameFindings("NullableNullGuard01", Program.ANALYZER_TYPE_FILTER);
+  }
+
+  @Test public void fewerNodes() {
+    assertThat(cfgNodes("SharedFinally01", CfgExceptionModel.PER_REGION))
+        .isLessThan(cfgNodes("SharedFinally01", CfgExceptionModel.PER_CALL));
+  }
+}
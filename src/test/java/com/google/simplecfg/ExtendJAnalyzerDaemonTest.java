@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for re-analyzing changed files in the analyzer daemon. */
+@RunWith(JUnit4.class)
+public class ExtendJAnalyzerDaemonTest {
+
+  private static final long DEBOUNCE_MILLIS = 500;
+  private static final long TIMEOUT_SECONDS = 30;
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private ExtendJAnalyzerDaemon daemon;
+  private RecordingWriter writer;
+  private Thread thread;
+  private Path file;
+  private String path;
+
+  /** Records the file updates written to it as "path: number of findings". */
+  private static class RecordingWriter extends FindingsWriter {
+    final BlockingQueue<String> updates = new LinkedBlockingQueue<String>();
+
+    RecordingWriter() {
+      super(FindingsWriter.Format.TEXT, Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    @Override
+    public void writeFile(String path, Collection<ExtendJFinding> findings) {
+      updates.add(path + ": " + findings.size());
+    }
+
+    @Override
+    protected void writeFinding(ExtendJFinding finding) {
+    }
+
+    /** The next update, waiting for it if necessary. */
+    String next() throws InterruptedException {
+      String update = updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertThat(update).isNotNull();
+      return update;
+    }
+  }
+
+  @Before public void startDaemon() throws Exception {
+    Path root = tmp.getRoot().toPath();
+    file = root.resolve("AlreadyClosedControlFlow01.java");
+    path = file.toString();
+    Files.copy(Paths.get("testdata/AlreadyClosedControlFlow01.javax"), file);
+    daemon = new ExtendJAnalyzerDaemon(Collections.singletonList(root), new String[0],
+        DEBOUNCE_MILLIS, FindingsWriter.Format.TEXT);
+    writer = new RecordingWriter();
+    daemon.addWriter(writer);
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          daemon.run();
+        } catch (IOException | InterruptedException e) {
+          // Stopped.
+        }
+      }
+    });
+    thread.start();
+    assertThat(writer.next()).isEqualTo(path + ": " + findingCount());
+  }
+
+  @After public void stopDaemon() throws InterruptedException {
+    thread.interrupt();
+    thread.join();
+  }
+
+  private int findingCount() {
+    return daemon.getFindings().get(path).size();
+  }
+
+  /** A burst of changes to a file results in one analysis of the file. */
+  @Test public void debounce() throws Exception {
+    byte[] source = Files.readAllBytes(file);
+    for (int i = 0; i < 5; ++i) {
+      Files.write(file, source);
+    }
+    assertThat(writer.next()).isEqualTo(path + ": " + findingCount());
+    assertThat(writer.updates.poll(2 * DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  @Test public void deletedFile() throws Exception {
+    Files.delete(file);
+    assertThat(writer.next()).isEqualTo(path + ": 0");
+    assertThat(daemon.getFindings().containsKey(path)).isFalse();
+  }
+
+  /** A new client receives the current findings, and then the updates. */
+  @Test public void clientUpdates() throws Exception {
+    int count = findingCount();
+    assertThat(count).isGreaterThan(0);
+    RecordingWriter client = new RecordingWriter();
+    daemon.addWriter(client);
+    assertThat(client.next()).isEqualTo(path + ": " + count);
+
+    Files.write(file, "class AlreadyClosedControlFlow01 {}\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(writer.next()).isEqualTo(path + ": 0");
+    assertThat(client.next()).isEqualTo(path + ": 0");
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/** Tests that files that can not be analyzed do not stop the analysis of the other files. */
+@RunWith(JUnit4.class)
+public class ExtendJAnalyzerFrontendTest {
+
+  static final String GOOD = "testdata/AlreadyClosedControlFlow01.javax";
+  private static final String FAILING = "testdata/AlreadyClosedWriter01.javax";
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Fails the analysis of a file by throwing when its findings are written. Retries of the file
+   * use the same writer.
+   */
+  private static class FailingWriter extends FindingsWriter {
+    private final String failingPath;
+    private int failures;
+
+    FailingWriter(String failingPath, int failures) {
+      super(FindingsWriter.Format.JSONL, Channels.newChannel(new ByteArrayOutputStream()));
+      this.failingPath = failingPath;
+      this.failures = failures;
+    }
+
+    @Override
+    public void write(Collection<ExtendJFinding> findings) throws IOException {
+      if (!findings.isEmpty() && findings.iterator().next().sourcePath.equals(failingPath)
+          && failures > 0) {
+        failures -= 1;
+        throw new IllegalStateException("analysis failure for testing");
+      }
+      super.write(findings);
+    }
+
+    @Override
+    protected void writeFinding(ExtendJFinding finding) {
+    }
+  }
+
+  /** The paths of the files that have findings. */
+  private static List<String> findingPaths(ExtendJAnalyzerFrontend checker) {
+    List<String> paths = new ArrayList<String>();
+    for (ExtendJFinding finding : checker.getFindings()) {
+      if (!paths.contains(finding.sourcePath)) {
+        paths.add(finding.sourcePath);
+      }
+    }
+    return paths;
+  }
+
+  private static int count(Collection<ExtendJFinding> findings, String path) {
+    int count = 0;
+    for (ExtendJFinding finding : findings) {
+      if (finding.sourcePath.equals(path)) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  @Test public void unreadableFile() throws Exception {
+    // A directory can not be read as a file, regardless of permissions.
+    String unreadable = tmp.newFolder("Unreadable.java").getPath();
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    int result = checker.run(new String[] { unreadable, GOOD });
+    assertThat(result).isEqualTo(ExtendJAnalyzerFrontend.EXIT_SYSTEM_ERROR);
+    assertThat(findingPaths(checker)).isEqualTo(Arrays.asList(GOOD));
+    assertThat(checker.getFileErrors().keySet()).contains(unreadable);
+  }
+
+  @Test public void syntaxErrors() throws Exception {
+    File broken = new File(tmp.getRoot(), "Broken.java");
+    Files.write(broken.toPath(), "class Broken {\n  void m( {\n}\n"
+        .getBytes(StandardCharsets.UTF_8));
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    int result = checker.run(new String[] { broken.getPath(), GOOD });
+    assertThat(result).isEqualTo(ExtendJAnalyzerFrontend.EXIT_ERROR);
+    assertThat(findingPaths(checker)).isEqualTo(Arrays.asList(GOOD));
+    assertThat(checker.getFileErrors().get(broken.getPath())).isEqualTo("syntax errors");
+  }
+
+  /** A file whose analysis fails again when it is retried is reported as a file error. */
+  @Test public void failingAnalysis() {
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    checker.setFindingsWriter(new FailingWriter(FAILING, 2));
+    int result = checker.run(new String[] { FAILING, GOOD });
+    assertThat(result).isEqualTo(ExtendJAnalyzerFrontend.EXIT_UNHANDLED_ERROR);
+    assertThat(findingPaths(checker)).isEqualTo(Arrays.asList(GOOD));
+    assertThat(checker.getFileErrors().keySet()).contains(FAILING);
+  }
+
+  /** The findings of a file whose retry succeeds are reported once. */
+  @Test public void retriedAnalysis() {
+    ExtendJAnalyzerFrontend reference = new ExtendJAnalyzerFrontend();
+    assertThat(reference.run(new String[] { FAILING })).isEqualTo(0);
+    int expected = count(reference.getFindings(), FAILING);
+    assertThat(expected).isGreaterThan(0);
+
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    checker.setFindingsWriter(new FailingWriter(FAILING, 1));
+    int result = checker.run(new String[] { FAILING, GOOD });
+    assertThat(result).isEqualTo(0);
+    assertThat(count(checker.getFindings(), FAILING)).isEqualTo(expected);
+    assertThat(count(checker.getFindings(), GOOD)).isGreaterThan(0);
+    assertThat(checker.getFileErrors()).isEmpty();
+  }
+}
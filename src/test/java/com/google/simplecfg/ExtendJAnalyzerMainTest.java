@@ -0,0 +1,68 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** Tests for the command-line analyzer. */
+@RunWith(JUnit4.class)
+public class ExtendJAnalyzerMainTest {
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  /** The findings of the other files are printed when a file can not be analyzed. */
+  @Test public void findingsOnError() throws Exception {
+    File broken = new File(tmp.getRoot(), "Broken.java");
+    Files.write(broken.toPath(), "class Broken {\n".getBytes(StandardCharsets.UTF_8));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int result = ExtendJAnalyzerMain.run(
+        new String[] { broken.getPath(), ExtendJAnalyzerFrontendTest.GOOD }, out,
+        new PrintStream(new ByteArrayOutputStream()));
+    assertThat(result).isEqualTo(ExtendJAnalyzerFrontend.EXIT_ERROR);
+
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertThat(lines[0]).isEqualTo("Found " + (lines.length - 1) + " findings.");
+    assertThat(lines.length).isGreaterThan(1);
+    for (int i = 1; i < lines.length; ++i) {
+      assertThat(lines[i]).startsWith(ExtendJAnalyzerFrontendTest.GOOD + ":");
+    }
+  }
+
+  /** Streamed findings of the other files are written when a file can not be analyzed. */
+  @Test public void streamedFindingsOnError() throws Exception {
+    File broken = new File(tmp.getRoot(), "Broken.java");
+    Files.write(broken.toPath(), "class Broken {\n".getBytes(StandardCharsets.UTF_8));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int result = ExtendJAnalyzerMain.run(new String[] {
+          "-findings-format=jsonl", broken.getPath(), ExtendJAnalyzerFrontendTest.GOOD },
+        out, new PrintStream(new ByteArrayOutputStream()));
+    assertThat(result).isEqualTo(ExtendJAnalyzerFrontend.EXIT_ERROR);
+    String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(json).startsWith("{\"file\":\"" + ExtendJAnalyzerFrontendTest.GOOD + "\",");
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/** Tests for the streaming findings writers. */
+@RunWith(JUnit4.class)
+public class FindingsWriterTest {
+
+  private static final ExtendJFinding FIRST =
+      new ExtendJFinding("A.java", "AlreadyClosed", "say \"hi\"", 3, 5, 3, 9);
+  private static final ExtendJFinding SECOND =
+      new ExtendJFinding("A.java", "NullableDereference", "message", 7, 1, 7, 4);
+  private static final ExtendJFinding THIRD =
+      new ExtendJFinding("B.java", "AlreadyClosed", "message", 1, 1, 1, 2);
+
+  private static String write(FindingsWriter.Format format) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (FindingsWriter writer = FindingsWriter.create(format, Channels.newChannel(out))) {
+      writer.write(Arrays.asList(FIRST, SECOND));
+      writer.write(Collections.<ExtendJFinding>emptyList());
+      writer.write(Collections.singletonList(THIRD));
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test public void text() throws Exception {
+    assertThat(write(FindingsWriter.Format.TEXT)).isEqualTo(
+        FIRST + "\n" + SECOND + "\n" + THIRD + "\n");
+  }
+
+  @Test public void jsonLines() throws Exception {
+    String[] lines = write(FindingsWriter.Format.JSONL).split("\n");
+    assertThat(lines).hasLength(3);
+    assertThat(lines[0]).isEqualTo("{\"file\":\"A.java\",\"line\":3,\"column\":5,\"endLine\":3,"
+        + "\"endColumn\":9,\"category\":\"AlreadyClosed\",\"message\":\"say \\\"hi\\\"\"}");
+    assertThat(lines[2]).startsWith("{\"file\":\"B.java\",");
+  }
+
+  @Test public void sarif() throws Exception {
+    String sarif = write(FindingsWriter.Format.SARIF);
+    assertThat(sarif).startsWith("{\"version\":\"2.1.0\",");
+    assertThat(sarif).contains("\"artifactLocation\":{\"index\":1}");
+    assertThat(sarif).contains("\"artifacts\":[\n"
+        + "{\"location\":{\"uri\":\"A.java\",\"uriBaseId\":\"%SRCROOT%\"}},\n"
+        + "{\"location\":{\"uri\":\"B.java\",\"uriBaseId\":\"%SRCROOT%\"}}]");
+    assertThat(sarif).endsWith("]}]}\n");
+  }
+
+  @Test public void sarifUris() throws Exception {
+    assertThat(FindingsWriter.SarifWriter.relativeUri("src/a b/C#1%\u00e9.java"))
+        .isEqualTo("src/a%20b/C%231%25%C3%A9.java");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String absolute = new File("a b/A.java").getAbsolutePath();
+    try (FindingsWriter writer = FindingsWriter.create(FindingsWriter.Format.SARIF,
+        Channels.newChannel(out))) {
+      writer.write(Collections.singletonList(
+          new ExtendJFinding(absolute, "AlreadyClosed", "message", 1, 1, 1, 2)));
+    }
+    String sarif = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(sarif).contains("{\"location\":{\"uri\":\"file:");
+    assertThat(sarif).contains("/a%20b/A.java\"}}");
+  }
+
+  private static String writeFile(FindingsWriter.Format format) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (FindingsWriter writer = FindingsWriter.create(format, Channels.newChannel(out))) {
+      writer.writeFile("A.java", Arrays.asList(FIRST, SECOND));
+      writer.writeFile("B.java", Collections.<ExtendJFinding>emptyList());
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test public void textFileUpdates() throws Exception {
+    assertThat(writeFile(FindingsWriter.Format.TEXT)).isEqualTo(
+        "Analyzed A.java: 2 findings.\n" + FIRST + "\n" + SECOND + "\n"
+        + "Analyzed B.java: 0 findings.\n");
+  }
+
+  @Test public void jsonFileUpdates() throws Exception {
+    String[] lines = writeFile(FindingsWriter.Format.JSONL).split("\n");
+    assertThat(lines).hasLength(4);
+    assertThat(lines[0]).isEqualTo("{\"file\":\"A.java\",\"findings\":2}");
+    assertThat(lines[3]).isEqualTo("{\"file\":\"B.java\",\"findings\":0}");
+  }
+
+  @Test public void supportsFileUpdates() {
+    assertThat(FindingsWriter.Format.TEXT.supportsFileUpdates()).isTrue();
+    assertThat(FindingsWriter.Format.JSONL.supportsFileUpdates()).isTrue();
+    assertThat(FindingsWriter.Format.SARIF.supportsFileUpdates()).isFalse();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void sarifFileUpdates() throws Exception {
+    writeFile(FindingsWriter.Format.SARIF);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownFormat() {
+    FindingsWriter.Format.forName("xml");
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgEntry;
+import com.google.simplecfg.ast.CfgSize;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.FrozenCfg;
+import com.google.simplecfg.ast.MethodDecl;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests for the binary format for frozen CFGs. */
+@RunWith(JUnit4.class)
+public class FrozenCfgTest {
+
+  private static CfgEntry close01() {
+    CompilationUnit unit = StmtCfgTest.parseFile("Close01", Program.NO_TYPE_FILTER);
+    return ((MethodDecl) unit.getTypeDecl(0).getBodyDecl(0)).entry();
+  }
+
+  @Test public void roundTrip() throws IOException {
+    CfgEntry entry = close01();
+    CfgSize size = entry.size();
+    FrozenCfg frozen = entry.freeze("f(java.io.Writer)", 42L);
+    Path file = Files.createTempFile("Close01", ".cfg");
+    try {
+      try (OutputStream out = new FileOutputStream(file.toFile())) {
+        frozen.writeTo(out);
+      }
+      FrozenCfg mapped = FrozenCfg.map(file);
+      assertThat(mapped.key()).isEqualTo("f(java.io.Writer)");
+      assertThat(mapped.fingerprint()).isEqualTo(42L);
+      assertThat(mapped.sizeInBytes()).isEqualTo(frozen.sizeInBytes());
+      assertThat(mapped.numNodes()).isEqualTo(size.nodes);
+      assertThat(mapped.numEdges()).isEqualTo(size.edges);
+      assertThat(mapped.kind(0)).isEqualTo("entry");
+      assertThat(mapped.numVariables()).isEqualTo(1);
+      assertThat(mapped.variableName(0)).isEqualTo("writer");
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /** Search for the close call preceding the write call, like the AlreadyClosed analyzer. */
+  @Test public void reverseSearch() throws IOException {
+    final FrozenCfg frozen = FrozenCfg.read(ByteBuffer.wrap(toBytes(close01().freeze("f", 0))));
+    int write = -1;
+    int close = -1;
+    for (int node = 0; node < frozen.numNodes(); ++node) {
+      if (frozen.hasFlag(node, FrozenCfg.CLOSE_CALL)) {
+        close = node;
+      } else if (frozen.hasFlag(node, FrozenCfg.CALL) && frozen.receiver(node) == 0) {
+        write = node;
+      }
+    }
+    assertThat(close).isNotEqualTo(-1);
+    assertThat(write).isNotEqualTo(-1);
+    assertThat(FrozenCfg.line(frozen.start(write))).isEqualTo(23);
+    int match = frozen.search(write, true, new FrozenCfg.EdgeVisitor() {
+      @Override
+      public FrozenCfg.Action processEdge(int pred, int succ) {
+        if (frozen.hasFlag(succ, FrozenCfg.CLOSE_CALL)) {
+          return frozen.hasFlag(pred, FrozenCfg.EXCEPTION)
+              ? FrozenCfg.Action.SKIP
+              : FrozenCfg.Action.MATCH;
+        }
+        return FrozenCfg.Action.CONTINUE;
+      }
+    });
+    assertThat(match).isEqualTo(close);
+  }
+
+  @Test(expected = IOException.class)
+  public void badMagic() throws IOException {
+    FrozenCfg.read(ByteBuffer.allocate(64));
+  }
+
+  private static byte[] toBytes(FrozenCfg frozen) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    frozen.writeTo(out);
+    return out.toByteArray();
+  }
+}
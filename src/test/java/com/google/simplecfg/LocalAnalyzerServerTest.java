@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/** Tests for running tools in a local analyzer server. */
+@RunWith(JUnit4.class)
+public class LocalAnalyzerServerTest {
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private LocalAnalyzerServer server;
+  private Path descriptor;
+
+  @Before public void startServer() throws IOException {
+    server = new LocalAnalyzerServer(2);
+    descriptor = tmp.getRoot().toPath().resolve("daemon");
+    server.writeDescriptor(descriptor);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          // Closed.
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After public void stopServer() throws IOException {
+    server.close();
+  }
+
+  @Test public void printCfgMatchesInProcess() {
+    String[] args = { "testdata/Close01.javax" };
+    ByteArrayOutputStream remote = new ByteArrayOutputStream();
+    Integer exitCode = LocalAnalyzerClient.tryRun(descriptor, LocalAnalyzerClient.PRINT_CFG, args,
+        remote, new PrintStream(new ByteArrayOutputStream()));
+    ByteArrayOutputStream local = new ByteArrayOutputStream();
+    int localExitCode = new PrintCfg().run(args, local,
+        new PrintStream(new ByteArrayOutputStream()));
+    assertThat(exitCode).isEqualTo(localExitCode);
+    assertThat(remote.toByteArray()).isEqualTo(local.toByteArray());
+    assertThat(remote.size()).isGreaterThan(0);
+  }
+
+  @Test public void errorsAreForwarded() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    Integer exitCode = LocalAnalyzerClient.tryRun(descriptor, LocalAnalyzerClient.PRINT_CFG,
+        new String[] { "-j=0" }, new ByteArrayOutputStream(), new PrintStream(err));
+    assertThat(exitCode).isEqualTo(2);
+    assertThat(new String(err.toByteArray(), StandardCharsets.UTF_8))
+        .isEqualTo("Error: -j must be positive\n");
+  }
+
+  @Test public void invalidToken() throws IOException {
+    Files.write(descriptor, Arrays.asList(Files.readAllLines(descriptor).get(0), "bad"));
+    Integer exitCode = LocalAnalyzerClient.tryRun(descriptor, LocalAnalyzerClient.PRINT_CFG,
+        new String[0], new ByteArrayOutputStream(), new PrintStream(new ByteArrayOutputStream()));
+    assertThat(exitCode).isEqualTo(ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR);
+  }
+
+  @Test public void noServer() {
+    assertThat(LocalAnalyzerClient.tryRun(tmp.getRoot().toPath().resolve("missing"),
+        LocalAnalyzerClient.ANALYZE, new String[0], new ByteArrayOutputStream(),
+        System.err)).isNull();
+  }
+
+  /** A request with an invalid token is rejected without waiting for the rest of it. */
+  @Test public void tokenIsCheckedFirst() throws IOException {
+    try (Socket socket = connect()) {
+      DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+      request.writeUTF("bad");
+      request.flush();
+      assertThat(exitCode(socket)).isEqualTo(ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR);
+    }
+  }
+
+  @Test public void tooManyArguments() throws IOException {
+    try (Socket socket = connect()) {
+      DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+      request.writeUTF(Files.readAllLines(descriptor).get(1));
+      request.writeUTF(LocalAnalyzerClient.PRINT_CFG);
+      request.writeInt(Integer.MAX_VALUE);
+      request.flush();
+      assertThat(exitCode(socket)).isEqualTo(ExtendJAnalyzerFrontend.EXIT_CONFIG_ERROR);
+    }
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+        Integer.parseInt(Files.readAllLines(descriptor).get(0)));
+    socket.setSoTimeout(LocalAnalyzerServer.REQUEST_TIMEOUT_MILLIS);
+    return socket;
+  }
+
+  /** Read the response frames and return the exit code. */
+  private static int exitCode(Socket socket) throws IOException {
+    DataInputStream response = new DataInputStream(socket.getInputStream());
+    while (response.readByte() != LocalAnalyzerClient.EXIT) {
+      response.skipBytes(response.readInt());
+    }
+    return response.readInt();
+  }
+
+  @Test public void absolutePaths() {
+    String[] args = LocalAnalyzerClient.absoluteArguments(new String[] {
+        "-reverse", "-out=cfgs", "A.java", "-classpath", "a" + File.pathSeparator + "/b",
+        "-encoding", "UTF-8", "-d", "classes" });
+    assertThat(args[0]).isEqualTo("-reverse");
+    assertThat(args[1]).isEqualTo("-out=" + new File("cfgs").getAbsolutePath());
+    assertThat(args[2]).isEqualTo(new File("A.java").getAbsolutePath());
+    assertThat(args[3]).isEqualTo("-classpath");
+    assertThat(args[4]).isEqualTo(new File("a").getAbsolutePath() + File.pathSeparator + "/b");
+    assertThat(args[6]).isEqualTo("UTF-8");
+    assertThat(args[8]).isEqualTo(new File("classes").getAbsolutePath());
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.ExtendJFinding;
+import com.google.simplecfg.ast.MethodSummaryCache;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.TypeLookupFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/** Tests for the interprocedural method summaries. */
+@RunWith(JUnit4.class)
+public class MethodSummaryTest {
+
+  private static Program program(TypeLookupFilter typeFilter, MethodSummaryCache cache) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    program.setMethodSummaryCache(cache);
+    return program;
+  }
+
+  /** The lines of the findings for a test file. */
+  private static Collection<Integer> findingLines(String filename, Program program) {
+    Collection<Integer> lines = new HashSet<Integer>();
+    for (String finding : StmtCfgTest.findings(filename, program)) {
+      lines.add(Integer.parseInt(finding.split(":")[1]));
+    }
+    return lines;
+  }
+
+  @Test public void closedByHelper() {
+    assertThat(findingLines("MethodSummaryClose01",
+        program(Program.NO_TYPE_FILTER, new MethodSummaryCache()))).containsExactly(23, 28);
+  }
+
+  @Test public void dereferencedByHelper() {
+    assertThat(findingLines("MethodSummaryNullable01",
+        program(Program.ANALYZER_TYPE_FILTER, new MethodSummaryCache()))).containsExactly(25, 40);
+  }
+
+  @Test public void disabledByDefault() {
+    assertThat(findingLines("MethodSummaryClose01", program(Program.NO_TYPE_FILTER, null)))
+        .isEmpty();
+    assertThat(findingLines("MethodSummaryNullable01",
+        program(Program.ANALYZER_TYPE_FILTER, null))).isEmpty();
+  }
+
+  @Test public void sharedCache() {
+    MethodSummaryCache cache = new MethodSummaryCache();
+    findingLines("MethodSummaryClose01", program(Program.NO_TYPE_FILTER, cache));
+    int size = cache.size();
+    assertThat(size).isGreaterThan(0);
+    // The same methods in another program reuse the cached summaries.
+    assertThat(findingLines("MethodSummaryClose01", program(Program.NO_TYPE_FILTER, cache)))
+        .containsExactly(23, 28);
+    assertThat(cache.size()).isEqualTo(size);
+  }
+
+  /** The findings of the analyzer for the summary test files, with the given options. */
+  private static List<String> analyzerFindings(String... options) {
+    List<String> args = new ArrayList<String>();
+    for (String option : options) {
+      args.add(option);
+    }
+    args.add("testdata/MethodSummaryClose01.javax");
+    args.add("testdata/MethodSummaryNullable01.javax");
+    ExtendJAnalyzerFrontend checker = new ExtendJAnalyzerFrontend();
+    assertThat(checker.run(args.toArray(new String[0])))
+        .isEqualTo(ExtendJAnalyzerFrontend.EXIT_SUCCESS);
+    List<String> findings = new ArrayList<String>();
+    for (ExtendJFinding finding : checker.getFindings()) {
+      findings.add(finding.toString());
+    }
+    return findings;
+  }
+
+  /** Summarizing the call graph in parallel gives the same findings as summarizing it alone. */
+  @Test public void parallelSummaries() {
+    List<String> sequential = analyzerFindings("-method-summaries");
+    assertThat(sequential.size()).isGreaterThan(analyzerFindings().size());
+    assertThat(analyzerFindings("-method-summaries", "-summary-workers=3"))
+        .isEqualTo(sequential);
+  }
+}
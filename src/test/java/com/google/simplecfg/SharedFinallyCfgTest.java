@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.TypeLookupFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collection;
+
+/**
+ * Tests that the analyzers report the same findings when CFGs are built with shared finally
+ * blocks as with the default finally block copies.
+ */
+@RunWith(JUnit4.class)
+public class SharedFinallyCfgTest {
+
+  private static Collection<String> findings(String filename, TypeLookupFilter typeFilter,
+      boolean sharedFinally) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    program.setSharedFinallyCfg(sharedFinally);
+    return StmtCfgTest.findings(filename, program);
+  }
+
+  private static void assertSameFindings(String filename, TypeLookupFilter typeFilter) {
+    Collection<String> expected = findings(filename, typeFilter, false);
+    assertThat(findings(filename, typeFilter, true)).containsExactlyElementsIn(expected);
+  }
+
+  @Test public void alreadyClosedControlFlow01() {
+    assertSameFindings("AlreadyClosedControlFlow01", Program.NO_TYPE_FILTER);
+  }
+
+  @Test public void sharedFinally01() {
+    assertSameFindings("SharedFinally01", Program.NO_TYPE_FILTER);
+    assertSameFindings("SharedFinally01", Program.ANALYZER_TYPE_FILTER);
+  }
+
+  /**
+   * Paths that leave a shared finally block inside a loop by an exception or a jump must not
+   * make the searches run forever.
+   */
+  @Test public void sharedFinally02() {
+    assertSameFindings("SharedFinally02", Program.NO_TYPE_FILTER);
+    assertSameFindings("SharedFinally02", Program.ANALYZER_TYPE_FILTER);
+  }
+
+  @Test public void nullableNullGuard01() {
+    assertSameFindings("NullableNullGuard01", Program.ANALYZER_TYPE_FILTER);
+  }
+}
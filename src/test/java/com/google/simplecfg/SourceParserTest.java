@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CompilationUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/** Tests for the reusable per-thread source parser. */
+@RunWith(JUnit4.class)
+public class SourceParserTest {
+
+  @Test public void sameParserPerThread() {
+    assertThat(SourceParser.forCurrentThread()).isSameAs(SourceParser.forCurrentThread());
+  }
+
+  @Test public void reuseParser() throws Exception {
+    SourceParser parser = SourceParser.forCurrentThread();
+    CompilationUnit first = parser.parseFile("testdata/Close01.javax");
+    CompilationUnit second = parser.parseFile("testdata/AlreadyClosedWriter01.javax");
+    CompilationUnit third = parser.parseFile("testdata/Close01.javax");
+    assertThat(first).isNotSameAs(third);
+    assertThat(first.getNumTypeDecl()).isEqualTo(1);
+    assertThat(second.getNumTypeDecl()).isEqualTo(1);
+    assertThat(third.getTypeDecl(0).name()).isEqualTo(first.getTypeDecl(0).name());
+    assertThat(third.getTypeDecl(0).getNumBodyDecl())
+        .isEqualTo(first.getTypeDecl(0).getNumBodyDecl());
+  }
+
+  @Test public void parseStream() throws Exception {
+    SourceParser parser = SourceParser.forCurrentThread();
+    CompilationUnit fromFile = parser.parseFile("testdata/AlreadyClosedWriter01.javax");
+    CompilationUnit fromStream;
+    try (InputStream in = new FileInputStream("testdata/AlreadyClosedWriter01.javax")) {
+      fromStream = parser.parse(in, "testdata/AlreadyClosedWriter01.javax");
+    }
+    assertThat(fromStream.getTypeDecl(0).name()).isEqualTo(fromFile.getTypeDecl(0).name());
+    assertThat(fromStream.getTypeDecl(0).getNumBodyDecl())
+        .isEqualTo(fromFile.getTypeDecl(0).getNumBodyDecl());
+  }
+}
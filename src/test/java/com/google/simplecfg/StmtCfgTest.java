@@ -50,6 +50,16 @@ public class StmtCfgTest {
 
   /** Helper method to parse an ExtendJ compilation unit from a file.  */
   protected static CompilationUnit parseFile(String filename, TypeLookupFilter typeFilter) {
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    return parseFile(filename, program);
+  }
+
+  /**
+   * Helper method to parse an ExtendJ compilation unit from a file and add it to the given
+   * program. Used by tests that need a non-default program configuration.
+   */
+  protected static CompilationUnit parseFile(String filename, Program program) {
     String path = "testdata/" + filename + ".javax";
     try {
       JavaParser javaParser = new JavaParser() {
@@ -66,10 +76,8 @@ public class StmtCfgTest {
           return new BytecodeParser(is, fullName).parse(null, null, p);
         }
       };
-      Program program = new Program();
       program.initBytecodeReader(bytecodeReader);
       program.initJavaParser(javaParser);
-      program.setTypeLookupFilter(typeFilter);
       CompilationUnit unit = javaParser.parse(new FileInputStream(path), path);
       // Attach the parsed unit to a program node so we have a healthy AST.
       program.addCompilationUnit(unit);
@@ -94,7 +102,14 @@ public class StmtCfgTest {
 
   /** Helper to get the findings for a given file. */
   protected static Collection<String> findings(String filename, TypeLookupFilter typeFilter) {
-    CompilationUnit unit = StmtCfgTest.parseFile(filename, typeFilter);
+    Program program = new Program();
+    program.setTypeLookupFilter(typeFilter);
+    return findings(filename, program);
+  }
+
+  /** Helper to get the findings for a given file analyzed in the given program. */
+  protected static Collection<String> findings(String filename, Program program) {
+    CompilationUnit unit = StmtCfgTest.parseFile(filename, program);
     Collection<String> findings = new HashSet<String>();
     for (ExtendJFinding finding : unit.findings()) {
       findings.add(finding.toString());
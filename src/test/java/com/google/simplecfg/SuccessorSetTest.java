@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgNode;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.Program;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/** Tests that successor sets are shared by the CFG nodes in the same region. */
+@RunWith(JUnit4.class)
+public class SuccessorSetTest {
+
+  @Test public void sharedExceptionTargets() {
+    CompilationUnit unit = StmtCfgTest.parseFile("GenTryStmt01", Program.BASE_LIBRARY_FILTER);
+    CfgNode entry = unit.getTypeDecl(0).getBodyDecl(0).entry();
+    int exceptionNodes = 0;
+    Set<Set<? extends CfgNode>> successorSets = Collections.newSetFromMap(
+        new IdentityHashMap<Set<? extends CfgNode>, Boolean>());
+    for (CfgNode node : entry.reachableNodes(false)) {
+      if (node.isException()) {
+        exceptionNodes += 1;
+        successorSets.add(node.successors());
+      }
+    }
+    // The cond(), throw and x() exception nodes inside the try block share one set, and the
+    // c1() and c2() exception nodes in the catch clauses share the exit set.
+    assertThat(exceptionNodes).isEqualTo(5);
+    assertThat(successorSets).hasSize(2);
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.simplecfg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.simplecfg.ast.CfgEntry;
+import com.google.simplecfg.ast.CfgMethodCall;
+import com.google.simplecfg.ast.CompilationUnit;
+import com.google.simplecfg.ast.MethodDecl;
+import com.google.simplecfg.ast.Program;
+import com.google.simplecfg.ast.SparseCfg;
+import com.google.simplecfg.ast.Variable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for sparse per-variable CFGs. */
+@RunWith(JUnit4.class)
+public class VariableCfgTest {
+
+  @Test public void close01() {
+    CompilationUnit unit = StmtCfgTest.parseFile("Close01", Program.NO_TYPE_FILTER);
+    MethodDecl method = (MethodDecl) unit.getTypeDecl(0).getBodyDecl(0);
+    Variable writer = method.getParameter(0);
+    CfgEntry entry = method.entry();
+    List<CfgMethodCall> calls = new ArrayList<CfgMethodCall>(entry.index().callsOn(writer));
+
+    SparseCfg sparse = entry.variableCfg(writer);
+    assertThat(sparse.nodes()).containsExactly(entry, calls.get(0), calls.get(1));
+    assertThat(sparse.numEdges()).isEqualTo(2);
+    assertThat(entry.variableCfg(writer)).isSameAs(sparse);
+  }
+
+  @Test public void nullableNullGuard01() {
+    CompilationUnit unit = StmtCfgTest.parseFile("NullableNullGuard01",
+        Program.ANALYZER_TYPE_FILTER);
+    MethodDecl method = (MethodDecl) unit.getTypeDecl(0).getBodyDecl(1);
+    Variable p = method.getParameter(0);
+    SparseCfg sparse = method.entry().variableCfg(p);
+    // The entry, the null guard branch, and the dereference/call p.f1(p).
+    assertThat(sparse.nodes()).hasSize(3);
+    assertThat(sparse.numEdges()).isEqualTo(2);
+  }
+}